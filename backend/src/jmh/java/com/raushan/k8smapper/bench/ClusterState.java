@@ -0,0 +1,42 @@
+package com.raushan.k8smapper.bench;
+
+import com.raushan.k8smapper.service.K8sTopologyStore;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cluster shape shared by the benchmarks, overridable per run, e.g. {@code -p namespaces=1000}.
+ */
+@State(Scope.Benchmark)
+public class ClusterState {
+
+    @Param("50")
+    public int namespaces;
+
+    @Param("100")
+    public int podsPerNamespace;
+
+    @Param("10")
+    public int servicesPerNamespace;
+
+    @Param("10")
+    public int selectorCardinality;
+
+    @Param("2")
+    public int configFanOut;
+
+    @Param("5")
+    public int pvcsPerNamespace;
+
+    public SyntheticCluster cluster() {
+        return new SyntheticCluster(namespaces, podsPerNamespace, servicesPerNamespace, selectorCardinality,
+                configFanOut, pvcsPerNamespace);
+    }
+
+    public K8sTopologyStore populatedStore() {
+        K8sTopologyStore store = new K8sTopologyStore();
+        cluster().populate(store);
+        return store;
+    }
+}
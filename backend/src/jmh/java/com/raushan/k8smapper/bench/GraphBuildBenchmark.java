@@ -0,0 +1,75 @@
+package com.raushan.k8smapper.bench;
+
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.model.NamespacedGraphResponse;
+import com.raushan.k8smapper.model.TopologySnapshot;
+import com.raushan.k8smapper.service.K8sTopologyStore;
+import com.raushan.k8smapper.service.TopologyBuilderService;
+import com.raushan.k8smapper.service.TopologyGraphEngine;
+import com.raushan.k8smapper.service.TopologyMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full graph build from the store on 1..N pool threads, and a snapshot of the incrementally maintained graph for
+ * comparison. Run with {@code -prof gc} for the allocation per build.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBuildBenchmark {
+
+    // 0 means one thread per available processor
+    @Param({"1", "0"})
+    public int parallelism;
+
+    // Overrides the cluster's default: per-namespace build tasks only pay off on clusters with many namespaces
+    @Param({"50", "1000"})
+    public int namespaces;
+
+    private K8sTopologyStore store;
+    private TopologyBuilderService builder;
+    private TopologyGraphEngine graphEngine;
+
+    @Setup
+    public void setUp(ClusterState state) {
+        store = state.populatedStore();
+        TopologyProperties properties = new TopologyProperties();
+        properties.getGraph().setBuildParallelism(parallelism);
+        builder = new TopologyBuilderService(properties, new TopologyMetrics(new SimpleMeterRegistry()));
+        graphEngine = new TopologyGraphEngine(store, properties);
+        graphEngine.init();
+        graphEngine.drainPatch();
+    }
+
+    @TearDown
+    public void tearDown() {
+        builder.shutdown();
+    }
+
+    @Benchmark
+    public NamespacedGraphResponse buildFromStore() {
+        return builder.buildFromStore(store);
+    }
+
+    @Benchmark
+    public TopologySnapshot engineSnapshot() {
+        return graphEngine.snapshot();
+    }
+}
@@ -0,0 +1,84 @@
+package com.raushan.k8smapper.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.model.HistoryWindow;
+import com.raushan.k8smapper.model.NamespaceFilter;
+import com.raushan.k8smapper.model.TopologyPatch;
+import com.raushan.k8smapper.model.TopologySnapshot;
+import com.raushan.k8smapper.service.K8sTopologyStore;
+import com.raushan.k8smapper.service.TopologyEncoder;
+import com.raushan.k8smapper.service.TopologyGraphEngine;
+import com.raushan.k8smapper.service.TopologyHistory;
+import com.raushan.k8smapper.service.TopologyMetrics;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time travel: recording a revision (a patch, or every {@code keyframeEvery} revisions a full snapshot), and
+ * rebuilding the graph at the revision furthest from any keyframe, which is the slowest query the history answers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryBenchmark {
+
+    @Param("100")
+    public int keyframeEvery;
+
+    private TopologyHistory history;
+    private long revision;
+    private TopologyPatch lastPatch;
+
+    @Setup
+    public void setUp(ClusterState state) {
+        SyntheticCluster cluster = state.cluster();
+        K8sTopologyStore store = state.populatedStore();
+        TopologyGraphEngine graphEngine = new TopologyGraphEngine(store, new TopologyProperties());
+        graphEngine.init();
+        TopologyProperties properties = new TopologyProperties();
+        properties.getHistory().setKeyframeEvery(keyframeEvery);
+        history = new TopologyHistory(graphEngine,
+                new TopologyEncoder(new ObjectMapper(), new TopologyMetrics(new SimpleMeterRegistry())), properties);
+        history.record(graphEngine.drainPatch());
+
+        // Patches touching a pod each, right up to the next keyframe
+        for (int i = 1; i < keyframeEvery; i++) {
+            int p = i % cluster.podsPerNamespace();
+            Pod pod = cluster.pod(0, p, i);
+            pod.getMetadata().setName(pod.getMetadata().getName() + "-" + i);
+            store.upsertPod(SyntheticCluster.namespace(0), SyntheticCluster.podName(p), pod);
+            lastPatch = graphEngine.drainPatch();
+            history.record(lastPatch);
+        }
+        HistoryWindow window = history.window();
+        revision = window.newestRevision();
+        System.out.println("History: " + window);
+    }
+
+    @Benchmark
+    public void record() {
+        history.record(lastPatch);
+    }
+
+    @Benchmark
+    public TopologySnapshot rebuild() {
+        return history.atRevision(revision, NamespaceFilter.ALL);
+    }
+}
@@ -0,0 +1,101 @@
+package com.raushan.k8smapper.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.service.K8sTopologyStore;
+import com.raushan.k8smapper.service.TopologyEncoder;
+import com.raushan.k8smapper.service.TopologyGraphEngine;
+import com.raushan.k8smapper.service.TopologyHistory;
+import com.raushan.k8smapper.service.TopologyMetrics;
+import com.raushan.k8smapper.service.TopologySnapshotCache;
+import com.raushan.k8smapper.websocket.TopologySessionRegistry;
+import com.raushan.k8smapper.websocket.TopologyWebSocketPublisher;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One publish per invocation: a pod changes, and the resulting patch is drained, recorded in the history, encoded
+ * and queued for every session. Sessions discard what they receive, so this measures the publisher side of the
+ * fan-out; delivery happens on the sessions' own threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PublishBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int sessions;
+
+    // Negotiated subprotocol of every session, see WireFormat
+    @Param({"topology.json", "topology.json.gz", "topology.cbor"})
+    public String subprotocol;
+
+    private final LongAdder bytesSent = new LongAdder();
+    private K8sTopologyStore store;
+    private TopologyWebSocketPublisher publisher;
+    private Pod[] generations;
+    private String namespace;
+    private int next;
+
+    @Setup
+    public void setUp(ClusterState state) {
+        SyntheticCluster cluster = state.cluster();
+        store = state.populatedStore();
+        TopologyGraphEngine graphEngine = new TopologyGraphEngine(store, new TopologyProperties());
+        graphEngine.init();
+        graphEngine.drainPatch();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        TopologyMetrics metrics = new TopologyMetrics(new SimpleMeterRegistry());
+        TopologyEncoder encoder = new TopologyEncoder(objectMapper, metrics);
+        TopologyProperties properties = new TopologyProperties();
+        // Every publish must reach every session instead of collapsing into snapshots
+        properties.getWebsocket().setQueueCapacity(Integer.MAX_VALUE);
+        properties.getWebsocket().setCompressionMinSize(DataSize.ofBytes(0));
+        publisher = new TopologyWebSocketPublisher(graphEngine, objectMapper, encoder, properties,
+                new TopologySessionRegistry(), store, new TopologySnapshotCache(graphEngine, encoder),
+                new TopologyHistory(graphEngine, encoder, properties), metrics);
+        for (int i = 0; i < sessions; i++) {
+            publisher.open(new DiscardingSession("session-" + i, subprotocol, bytesSent));
+        }
+
+        // Two versions of one pod that differ in the node name, so every publish is a one-op patch
+        namespace = SyntheticCluster.namespace(0);
+        generations = new Pod[]{cluster.pod(0, 0, 0), cluster.pod(0, 0, 1)};
+        generations[1].getMetadata().setName(generations[1].getMetadata().getName() + "-renamed");
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (int i = 0; i < sessions; i++) {
+            publisher.close("session-" + i);
+        }
+        System.out.println(bytesSent.sum() + " bytes sent to " + sessions + " " + subprotocol + " sessions");
+    }
+
+    @Benchmark
+    public void publishChanges() {
+        Pod pod = generations[next++ & 1];
+        store.upsertPod(namespace, SyntheticCluster.podName(0), pod);
+        publisher.publishChanges();
+    }
+}
@@ -0,0 +1,74 @@
+package com.raushan.k8smapper.bench;
+
+import com.raushan.k8smapper.model.projection.PodInfo;
+import com.raushan.k8smapper.model.projection.ServiceInfo;
+import com.raushan.k8smapper.service.K8sTopologyStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving every Service selector of one large namespace through the pod label index, against testing every pod
+ * against every Service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectorBenchmark {
+
+    @Param("5000")
+    public int pods;
+
+    @Param("500")
+    public int services;
+
+    @Param("500")
+    public int selectorCardinality;
+
+    private static final String NAMESPACE = SyntheticCluster.namespace(0);
+
+    private K8sTopologyStore store;
+    private Collection<ServiceInfo> serviceInfos;
+    private Collection<PodInfo> podInfos;
+
+    @Setup
+    public void setUp() {
+        store = new K8sTopologyStore();
+        new SyntheticCluster(1, pods, services, selectorCardinality, 0, 0).populate(store);
+        serviceInfos = store.getServicesByNamespace().get(NAMESPACE).values();
+        podInfos = store.getPodsByNamespace().get(NAMESPACE).values();
+    }
+
+    @Benchmark
+    public void labelIndex(Blackhole blackhole) {
+        for (ServiceInfo service : serviceInfos) {
+            blackhole.consume(store.selectPods(NAMESPACE, service.selector()));
+        }
+    }
+
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        for (ServiceInfo service : serviceInfos) {
+            for (PodInfo pod : podInfos) {
+                if (service.selects(pod)) {
+                    blackhole.consume(pod);
+                }
+            }
+        }
+    }
+}
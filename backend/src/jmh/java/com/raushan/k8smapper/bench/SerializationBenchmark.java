@@ -0,0 +1,71 @@
+package com.raushan.k8smapper.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.model.TopologySnapshot;
+import com.raushan.k8smapper.model.WireFormat;
+import com.raushan.k8smapper.service.TopologyEncoder;
+import com.raushan.k8smapper.service.TopologyGraphEngine;
+import com.raushan.k8smapper.service.TopologyMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding, decoding and gzipping a full snapshot in each wire format. The body sizes of the format are printed at
+ * setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"JSON", "CBOR"})
+    public WireFormat format;
+
+    private TopologyEncoder encoder;
+    private TopologySnapshot snapshot;
+    private byte[] body;
+
+    @Setup
+    public void setUp(ClusterState state) throws IOException {
+        TopologyGraphEngine graphEngine = new TopologyGraphEngine(state.populatedStore(), new TopologyProperties());
+        graphEngine.init();
+        graphEngine.drainPatch();
+        snapshot = graphEngine.snapshot();
+        encoder = new TopologyEncoder(new ObjectMapper(), new TopologyMetrics(new SimpleMeterRegistry()));
+        body = encoder.encode(snapshot, format);
+        System.out.println(format + " snapshot: " + body.length + " bytes, " + encoder.gzip(body).length
+                + " bytes gzipped");
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return encoder.encode(snapshot, format);
+    }
+
+    @Benchmark
+    public TopologySnapshot decode() throws IOException {
+        return encoder.decode(body, format, TopologySnapshot.class);
+    }
+
+    @Benchmark
+    public byte[] gzip() {
+        return encoder.gzip(body);
+    }
+}
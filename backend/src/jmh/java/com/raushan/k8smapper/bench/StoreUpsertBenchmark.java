@@ -0,0 +1,71 @@
+package com.raushan.k8smapper.bench;
+
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.service.K8sTopologyStore;
+import com.raushan.k8smapper.service.TopologyGraphEngine;
+import io.fabric8.kubernetes.api.model.Pod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pod upserts into a populated store, as the informers deliver them: projection, id, owner and label index
+ * maintenance, and, with {@code engine=true}, the incremental graph update the listener does on every change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StoreUpsertBenchmark {
+
+    @Param({"false", "true"})
+    public boolean engine;
+
+    private K8sTopologyStore store;
+    private TopologyGraphEngine graphEngine;
+    private Pod[][] generations;
+    private String[] namespaces;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(ClusterState state) {
+        SyntheticCluster cluster = state.cluster();
+        store = state.populatedStore();
+        if (engine) {
+            graphEngine = new TopologyGraphEngine(store, new TopologyProperties());
+            graphEngine.init();
+        }
+        int pods = cluster.namespaces() * cluster.podsPerNamespace();
+        generations = new Pod[2][pods];
+        namespaces = new String[pods];
+        for (int p = 0; p < pods; p++) {
+            int ns = p / cluster.podsPerNamespace();
+            int i = p % cluster.podsPerNamespace();
+            generations[0][p] = cluster.pod(ns, i, 0);
+            generations[1][p] = cluster.pod(ns, i, 1);
+            namespaces[p] = SyntheticCluster.namespace(ns);
+        }
+    }
+
+    @Benchmark
+    public void upsertPod() {
+        int p = next % namespaces.length;
+        // Alternate generations so every upsert replaces the pod with a different object
+        Pod pod = generations[(next / namespaces.length) & 1][p];
+        next++;
+        store.upsertPod(namespaces[p], pod.getMetadata().getName(), pod);
+        if (graphEngine != null && next % 1000 == 0) {
+            // Keep the pending changes bounded, as the publisher would
+            graphEngine.drainPatch();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.raushan.k8smapper.bench;
+
+import com.raushan.k8smapper.service.K8sTopologyStore;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.api.model.ObjectMetaBuilder;
+import io.fabric8.kubernetes.api.model.OwnerReference;
+import io.fabric8.kubernetes.api.model.OwnerReferenceBuilder;
+import io.fabric8.kubernetes.api.model.PersistentVolume;
+import io.fabric8.kubernetes.api.model.PersistentVolumeBuilder;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaimBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.kubernetes.api.model.Volume;
+import io.fabric8.kubernetes.api.model.VolumeBuilder;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.api.model.apps.DeploymentBuilder;
+import io.fabric8.kubernetes.api.model.apps.ReplicaSet;
+import io.fabric8.kubernetes.api.model.apps.ReplicaSetBuilder;
+import io.fabric8.kubernetes.api.model.networking.v1.Ingress;
+import io.fabric8.kubernetes.api.model.networking.v1.IngressBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deterministic cluster of a given shape, for benchmarks. Every namespace looks the same:
+ * <ul>
+ *     <li>{@code selectorCardinality} apps, each a Deployment owning a ReplicaSet, with its own
+ *     {@code configFanOut} ConfigMaps and Secrets;</li>
+ *     <li>{@code podsPerNamespace} pods spread round-robin over the apps, owned by their app's ReplicaSet, labelled
+ *     {@code app=<app>} and mounting all ConfigMaps and Secrets of their app;</li>
+ *     <li>{@code servicesPerNamespace} Services selecting the apps round-robin, and one Ingress routing to all of
+ *     them;</li>
+ *     <li>{@code pvcsPerNamespace} claims, each mounted by one pod and bound to its own PersistentVolume.</li>
+ * </ul>
+ * Names and uids are derived from the position, so two clusters of the same shape are identical.
+ */
+public record SyntheticCluster(int namespaces, int podsPerNamespace, int servicesPerNamespace,
+                               int selectorCardinality, int configFanOut, int pvcsPerNamespace) {
+
+    public SyntheticCluster {
+        selectorCardinality = Math.max(1, selectorCardinality);
+    }
+
+    public static String namespace(int ns) {
+        return "ns-" + ns;
+    }
+
+    public static String podName(int i) {
+        return "pod-" + i;
+    }
+
+    /**
+     * Upserts every resource of the cluster into the store.
+     */
+    public void populate(K8sTopologyStore store) {
+        for (int ns = 0; ns < namespaces; ns++) {
+            String namespace = namespace(ns);
+            for (int app = 0; app < selectorCardinality; app++) {
+                store.upsertDeployment(namespace, app(app), deployment(ns, app));
+                store.upsertReplicaSet(namespace, app(app) + "-rs", replicaSet(ns, app));
+                for (int j = 0; j < configFanOut; j++) {
+                    store.upsertConfigMap(namespace, configMap(app, j), configMap(ns, app, j));
+                    store.upsertSecret(namespace, secret(app, j), secret(ns, app, j));
+                }
+            }
+            for (int i = 0; i < pvcsPerNamespace; i++) {
+                store.upsertPVC(namespace, claim(i), claim(ns, i));
+                store.upsertPV(volume(ns, i), volume(ns, i, namespace));
+            }
+            for (int i = 0; i < podsPerNamespace; i++) {
+                store.upsertPod(namespace, podName(i), pod(ns, i, 0));
+            }
+            for (int s = 0; s < servicesPerNamespace; s++) {
+                store.upsertService(namespace, service(s), service(ns, s));
+            }
+            store.upsertIngress(namespace, "ingress", ingress(ns));
+        }
+    }
+
+    /**
+     * Pod {@code i} of namespace {@code ns}. Generations only differ in a label no Service selects, so upserting the
+     * next generation is a real change to the store without changing the graph.
+     */
+    public Pod pod(int ns, int i, int generation) {
+        int app = i % selectorCardinality;
+        List<Volume> volumes = new ArrayList<>();
+        for (int j = 0; j < configFanOut; j++) {
+            volumes.add(new VolumeBuilder().withName("cm-" + j)
+                    .withNewConfigMap().withName(configMap(app, j)).endConfigMap().build());
+            volumes.add(new VolumeBuilder().withName("secret-" + j)
+                    .withNewSecret().withSecretName(secret(app, j)).endSecret().build());
+        }
+        if (i < pvcsPerNamespace) {
+            volumes.add(new VolumeBuilder().withName("data")
+                    .withNewPersistentVolumeClaim().withClaimName(claim(i)).endPersistentVolumeClaim().build());
+        }
+        return new PodBuilder()
+                .withMetadata(new ObjectMetaBuilder(meta(ns, podName(i), "pod"))
+                        .withLabels(Map.of("app", app(app), "generation", Integer.toString(generation)))
+                        .withOwnerReferences(owner("ReplicaSet", app(app) + "-rs", uid(ns, "replicaset", app)))
+                        .build())
+                .withNewSpec().withVolumes(volumes).withNodeName("node-" + i % 16).endSpec()
+                .withNewStatus().withPhase("Running").endStatus()
+                .build();
+    }
+
+    private Deployment deployment(int ns, int app) {
+        return new DeploymentBuilder().withMetadata(meta(ns, app(app), "deployment")).build();
+    }
+
+    private ReplicaSet replicaSet(int ns, int app) {
+        return new ReplicaSetBuilder()
+                .withMetadata(new ObjectMetaBuilder(meta(ns, app(app) + "-rs", "replicaset"))
+                        .withOwnerReferences(owner("Deployment", app(app), uid(ns, "deployment", app)))
+                        .build())
+                .build();
+    }
+
+    private ConfigMap configMap(int ns, int app, int j) {
+        return new ConfigMapBuilder().withMetadata(meta(ns, configMap(app, j), "configmap")).build();
+    }
+
+    private Secret secret(int ns, int app, int j) {
+        return new SecretBuilder().withMetadata(meta(ns, secret(app, j), "secret")).build();
+    }
+
+    private PersistentVolumeClaim claim(int ns, int i) {
+        return new PersistentVolumeClaimBuilder().withMetadata(meta(ns, claim(i), "pvc"))
+                .withNewSpec().withVolumeName(volume(ns, i)).endSpec()
+                .build();
+    }
+
+    private PersistentVolume volume(int ns, int i, String namespace) {
+        return new PersistentVolumeBuilder()
+                .withNewMetadata().withName(volume(ns, i)).withUid(volume(ns, i)).endMetadata()
+                .withNewSpec().withNewClaimRef().withNamespace(namespace).withName(claim(i)).endClaimRef().endSpec()
+                .build();
+    }
+
+    private Service service(int ns, int s) {
+        return new ServiceBuilder().withMetadata(meta(ns, service(s), "service"))
+                .withNewSpec().withSelector(Map.of("app", app(s % selectorCardinality))).endSpec()
+                .build();
+    }
+
+    private Ingress ingress(int ns) {
+        IngressBuilder ingress = new IngressBuilder().withMetadata(meta(ns, "ingress", "ingress"));
+        var http = ingress.withNewSpec().addNewRule().withNewHttp();
+        for (int s = 0; s < servicesPerNamespace; s++) {
+            http.addNewPath().withPath("/" + service(s)).withPathType("Prefix")
+                    .withNewBackend().withNewService().withName(service(s)).endService().endBackend()
+                    .endPath();
+        }
+        return http.endHttp().endRule().endSpec().build();
+    }
+
+    private static ObjectMeta meta(int ns, String name, String kind) {
+        return new ObjectMetaBuilder().withNamespace(namespace(ns)).withName(name)
+                .withUid(namespace(ns) + "-" + kind + "-" + name).build();
+    }
+
+    private static OwnerReference owner(String kind, String name, String uid) {
+        return new OwnerReferenceBuilder().withKind(kind).withName(name).withUid(uid).withController(true).build();
+    }
+
+    private static String uid(int ns, String kind, int app) {
+        String name = kind.equals("replicaset") ? app(app) + "-rs" : app(app);
+        return namespace(ns) + "-" + kind + "-" + name;
+    }
+
+    private static String app(int app) {
+        return "app-" + app;
+    }
+
+    private static String configMap(int app, int j) {
+        return app(app) + "-config-" + j;
+    }
+
+    private static String secret(int app, int j) {
+        return app(app) + "-secret-" + j;
+    }
+
+    private static String claim(int i) {
+        return "data-" + i;
+    }
+
+    private static String volume(int ns, int i) {
+        return "pv-" + ns + "-" + i;
+    }
+
+    private static String service(int s) {
+        return "svc-" + s;
+    }
+}
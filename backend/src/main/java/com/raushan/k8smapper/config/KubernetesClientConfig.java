@@ -0,0 +1,16 @@
+package com.raushan.k8smapper.config;
+
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class KubernetesClientConfig {
+
+    // One client for the lifetime of the application, closed only on shutdown
+    @Bean(destroyMethod = "close")
+    public KubernetesClient kubernetesClient() {
+        return new KubernetesClientBuilder().build();
+    }
+}
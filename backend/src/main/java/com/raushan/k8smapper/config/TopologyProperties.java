@@ -0,0 +1,98 @@
+package com.raushan.k8smapper.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "topology")
+public class TopologyProperties {
+
+    private final Publish publish = new Publish();
+    private final Graph graph = new Graph();
+    private final WebSocket websocket = new WebSocket();
+    private final Informer informer = new Informer();
+    private final Checkpoint checkpoint = new Checkpoint();
+    private final History history = new History();
+    private final Impact impact = new Impact();
+    private final Query query = new Query();
+    private final Aggregation aggregation = new Aggregation();
+
+    @Data
+    public static class Publish {
+        // Quiet period after the last watch event before the graph is rebuilt
+        private Duration debounce = Duration.ofMillis(250);
+        // Upper bound on how long a burst of events can postpone a rebuild
+        private Duration maxDelay = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Graph {
+        // Compare the incremental graph against a full rebuild after every publish (debugging aid, expensive)
+        private boolean verify = false;
+        // Threads used for full graph builds; 0 means one per available processor
+        private int buildParallelism = 0;
+    }
+
+    @Data
+    public static class WebSocket {
+        // Messages buffered per session before the backlog is collapsed into one snapshot
+        private int queueCapacity = 32;
+        // A session whose current send has been blocked this long is closed
+        private Duration slowConsumerTimeout = Duration.ofSeconds(30);
+        // Offer the *.gz subprotocols, whose frames are gzipped once per revision and shared by all their sessions
+        private boolean compression = true;
+        // Frames smaller than this are sent uncompressed even to *.gz sessions
+        private DataSize compressionMinSize = DataSize.ofKilobytes(1);
+    }
+
+    @Data
+    public static class Informer {
+        // How often every cached object is replayed to the handlers; 0 disables resync
+        private Duration resyncPeriod = Duration.ofMinutes(10);
+        // Page size of the initial list and of every re-list after the watch expired
+        private long listPageSize = 500;
+    }
+
+    @Data
+    public static class Checkpoint {
+        // File the informer caches are checkpointed to and restored from on startup; empty disables checkpoints
+        private String path = "";
+        // How often the checkpoint is rewritten while resources keep changing
+        private Duration interval = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class History {
+        // Off-heap memory for recorded changes; the oldest are dropped when it is full, 0 disables history
+        private DataSize capacity = DataSize.ofMegabytes(64);
+        // A full snapshot is recorded instead of a patch every this many revisions, bounding the replay per query
+        private int keyframeEvery = 100;
+    }
+
+    @Data
+    public static class Impact {
+        // Hops an impact query follows, and the default when the request does not ask for fewer
+        private int maxDepth = 5;
+        // Dependents returned per query; the walk stops and reports truncation beyond this
+        private int maxResults = 10000;
+    }
+
+    @Data
+    public static class Query {
+        // Hops a neighborhood or path query follows, and the default when the request does not ask for fewer
+        private int maxDepth = 6;
+        // Nodes a query visits; it stops and reports truncation beyond this
+        private int maxNodes = 10000;
+        // Nodes or paths per page, and the default when the request does not ask for fewer
+        private int pageSize = 500;
+    }
+
+    @Data
+    public static class Aggregation {
+        // Pods of one owner shown as a single group node in the aggregated view from this many on; 0 disables groups
+        private int podThreshold = 50;
+    }
+}
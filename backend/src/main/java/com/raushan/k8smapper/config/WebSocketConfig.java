@@ -1,23 +1,65 @@
 package com.raushan.k8smapper.config;
 
+import com.raushan.k8smapper.model.WireFormat;
 import com.raushan.k8smapper.websocket.TopologyWebSocketHandler;
 import com.raushan.k8smapper.websocket.TopologyWebSocketPublisher;
 import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHttpHeaders;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocket
 @RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
     private final TopologyWebSocketPublisher publisher;
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(new TopologyWebSocketHandler(publisher), "/ws/topology")
+                .setHandshakeHandler(new PrecompressedFramesHandshakeHandler(publisher))
                 .setAllowedOrigins("*");
     }
+
+    /**
+     * Leaves permessage-deflate to the container for plain subprotocols, where it compresses every frame again for
+     * every session. Sessions on a {@code .gz} subprotocol already get frames compressed once per revision, so the
+     * extension is declined for them rather than deflating gzip output a second time.
+     */
+    @RequiredArgsConstructor
+    private static class PrecompressedFramesHandshakeHandler extends DefaultHandshakeHandler {
+
+        private final TopologyWebSocketPublisher publisher;
+
+        @NotNull
+        @Override
+        protected List<WebSocketExtension> filterRequestedExtensions(@NotNull ServerHttpRequest request,
+                                                                     @NotNull List<WebSocketExtension> requested,
+                                                                     @NotNull List<WebSocketExtension> supported) {
+            List<String> subprotocols = publisher.subprotocols();
+            // Same choice as the handshake makes: the first offered subprotocol the server supports
+            boolean precompressed = new WebSocketHttpHeaders(request.getHeaders()).getSecWebSocketProtocol().stream()
+                    .filter(subprotocols::contains)
+                    .findFirst()
+                    .filter(WireFormat::isCompressed)
+                    .isPresent();
+            if (precompressed) {
+                requested = requested.stream()
+                        .filter(extension -> !PERMESSAGE_DEFLATE.equals(extension.getName()))
+                        .toList();
+            }
+            return super.filterRequestedExtensions(request, requested, supported);
+        }
+    }
 }
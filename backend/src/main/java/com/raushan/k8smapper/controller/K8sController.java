@@ -1,24 +1,314 @@
 package com.raushan.k8smapper.controller;
 
-import com.raushan.k8smapper.model.NamespacedGraphResponse;
-import com.raushan.k8smapper.service.K8sTopologyStore;
-import com.raushan.k8smapper.service.TopologyBuilderService;
+import com.raushan.k8smapper.model.CompressionStats;
+import com.raushan.k8smapper.model.GraphPage;
+import com.raushan.k8smapper.model.HistoryWindow;
+import com.raushan.k8smapper.model.ImpactReport;
+import com.raushan.k8smapper.model.NamespaceFilter;
+import com.raushan.k8smapper.model.PathPage;
+import com.raushan.k8smapper.model.PodGroupExpansion;
+import com.raushan.k8smapper.model.PublishStats;
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.model.SessionStats;
+import com.raushan.k8smapper.model.TopologySnapshot;
+import com.raushan.k8smapper.model.WireFormat;
+import com.raushan.k8smapper.service.TopologyEncoder;
+import com.raushan.k8smapper.service.TopologyGraphEngine;
+import com.raushan.k8smapper.service.TopologyHistory;
+import com.raushan.k8smapper.service.TopologyImpact;
+import com.raushan.k8smapper.service.TopologyPublishScheduler;
+import com.raushan.k8smapper.service.TopologyQuery;
+import com.raushan.k8smapper.service.TopologySnapshotCache;
+import com.raushan.k8smapper.websocket.TopologyWebSocketPublisher;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
 @RestController
 @RequestMapping("/api/topology")
 @RequiredArgsConstructor
 public class K8sController {
 
-    private final K8sTopologyStore store;
-    private final TopologyBuilderService topologyBuilder;
+    private final TopologySnapshotCache snapshotCache;
+    private final TopologyPublishScheduler publishScheduler;
+    private final TopologyWebSocketPublisher webSocketPublisher;
+    private final TopologyEncoder encoder;
+    private final TopologyHistory history;
+    private final TopologyImpact impact;
+    private final TopologyQuery query;
+    private final TopologyGraphEngine graphEngine;
 
+    /**
+     * Current graph as a pre-encoded body, JSON unless the client accepts {@code application/cbor}. Its ETag changes
+     * with every revision, so pollers sending {@code If-None-Match} get a bodiless 304 until something actually
+     * changed.
+     *
+     * @param namespace namespaces to include, e.g. {@code ?namespace=shop&namespace=payments}; all when absent
+     * @param aggregate  the aggregated view, with the pods of large owners collapsed into group nodes
+     */
     @GetMapping
-    public NamespacedGraphResponse getTopology() {
-        return topologyBuilder.buildFromStore(store);
+    public ResponseEntity<byte[]> getTopology(@RequestParam(required = false) List<String> namespace,
+                                              @RequestParam(defaultValue = "false") boolean aggregate,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false)
+                                              String accept,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                              String acceptEncoding) {
+        WireFormat format = WireFormat.forAccept(accept);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        TopologySnapshotCache.Entry snapshot = snapshotCache.get(NamespaceFilter.of(namespace), aggregate);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.mediaType()))
+                .eTag(snapshot.etag(format, gzip))
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.gzip(format));
+        }
+        return response.body(snapshot.body(format));
+    }
+
+    /**
+     * Whether an {@code Accept-Encoding} header allows gzip: listed as {@code gzip} or {@code x-gzip}, or else covered
+     * by {@code *}, with a non-zero q-value. Without the header the body is sent uncompressed.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double gzip = -1;
+        double any = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim();
+                if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = Math.max(gzip, quality);
+            } else if (name.equals("*")) {
+                any = Math.max(any, quality);
+            }
+        }
+        return gzip >= 0 ? gzip > 0 : any > 0;
+    }
+
+    @GetMapping("/stats")
+    public PublishStats getPublishStats() {
+        return publishScheduler.getStats();
+    }
+
+    @GetMapping("/sessions")
+    public List<SessionStats> getSessionStats() {
+        return webSocketPublisher.sessionStats();
+    }
+
+    @GetMapping("/compression")
+    public CompressionStats getCompressionStats() {
+        return encoder.compressionStats();
+    }
+
+    /**
+     * Revisions and times {@link #getHistoricTopology} can currently rebuild.
+     */
+    @GetMapping("/history")
+    public HistoryWindow getHistoryWindow() {
+        return history.window();
+    }
+
+    /**
+     * Graph as it was at an earlier point, rebuilt from the recorded history.
+     *
+     * @param at       point in time, e.g. {@code ?at=2024-05-01T12:00:00Z}
+     * @param revision revision to rebuild instead of a time
+     * @return 400 if neither is given, 404 if the point lies before the retained history
+     */
+    @GetMapping("/history/snapshot")
+    public ResponseEntity<TopologySnapshot> getHistoricTopology(@RequestParam(required = false)
+                                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                                Instant at,
+                                                                @RequestParam(required = false) Long revision,
+                                                                @RequestParam(required = false) List<String> namespace) {
+        NamespaceFilter filter = NamespaceFilter.of(namespace);
+        TopologySnapshot snapshot;
+        if (revision != null) {
+            snapshot = history.atRevision(revision, filter);
+        } else if (at != null) {
+            snapshot = history.at(at.toEpochMilli(), filter);
+        } else {
+            return ResponseEntity.badRequest().build();
+        }
+        return snapshot != null ? ResponseEntity.ok(snapshot) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * What depends on a resource, directly or transitively: the pods consuming a ConfigMap, Secret or claim, the
+     * ReplicaSets, Deployments and Services over those pods, the Ingresses routing to a Service.
+     *
+     * @param type      type as in node ids, e.g. {@code configmap}, {@code secret}, {@code service}, {@code pvc};
+     *                  for the cluster-scoped {@code pv} the namespace is ignored
+     * @param depth     hops to follow, at most {@code topology.impact.max-depth} (also the default)
+     * @return 400 for an unknown type, 404 if the resource is not stored
+     */
+    @GetMapping("/impact/{type}/{namespace}/{name}")
+    public ResponseEntity<ImpactReport> getImpact(@PathVariable String type, @PathVariable String namespace,
+                                                  @PathVariable String name,
+                                                  @RequestParam(required = false) Integer depth) {
+        ResourceType resourceType = ResourceType.fromIdPrefix(type);
+        if (resourceType == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        ImpactReport report = impact.impact(resourceType, namespace, name, depth);
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Pods collapsed into a group node of the aggregated view, and their edges, to draw in place of the group.
+     *
+     * @param id group node id, e.g. {@code podgroup:<owner uid>}
+     * @return 404 unless the group is collapsed at the current revision
+     */
+    @GetMapping("/groups/{id}")
+    public ResponseEntity<PodGroupExpansion> getGroup(@PathVariable String id) {
+        PodGroupExpansion expansion = graphEngine.expand(id);
+        return expansion != null ? ResponseEntity.ok(expansion) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Nodes around one node, nearest first, and the edges between them.
+     *
+     * @param node      node id, e.g. {@code service:<uid>}
+     * @param depth     hops to follow, at most {@code topology.query.max-depth} (also the default)
+     * @param direction {@code out} along edges, {@code in} against them, {@code both} (default)
+     * @param type      types of the nodes to return, e.g. {@code ?type=pod&type=service}; all when absent
+     * @param limit     nodes per page, at most {@code topology.query.page-size} (also the default)
+     * @return 400 for an unknown type or direction, 404 if there is no such node
+     */
+    @GetMapping("/query/neighborhood")
+    public ResponseEntity<GraphPage> getNeighborhood(@RequestParam String node,
+                                                     @RequestParam(required = false) Integer depth,
+                                                     @RequestParam(defaultValue = "both") String direction,
+                                                     @RequestParam(required = false) List<String> type,
+                                                     @RequestParam(required = false) Integer offset,
+                                                     @RequestParam(required = false) Integer limit) {
+        Set<ResourceType> types = types(type);
+        TopologyQuery.Direction walk = direction(direction);
+        if (types == null || walk == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        GraphPage page = query.neighborhood(node, depth, walk, types, offset, limit);
+        return page != null ? ResponseEntity.ok(page) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Shortest paths, e.g. {@code ?to=pod:<uid>&fromType=ingress} for every Ingress reaching a pod,
+     * {@code ?from=ingress:<uid>&toType=pod} for every pod an Ingress reaches, or {@code ?from=..&to=..}.
+     *
+     * @param depth hops a path may have, at most {@code topology.query.max-depth} (also the default)
+     * @param limit paths per page, at most {@code topology.query.page-size} (also the default)
+     * @return 400 unless one end is a node and the other a node or type, 404 if the node to walk from does not exist
+     */
+    @GetMapping("/query/paths")
+    public ResponseEntity<PathPage> getPaths(@RequestParam(required = false) String from,
+                                             @RequestParam(required = false) String to,
+                                             @RequestParam(required = false) String fromType,
+                                             @RequestParam(required = false) String toType,
+                                             @RequestParam(required = false) Integer depth,
+                                             @RequestParam(required = false) Integer offset,
+                                             @RequestParam(required = false) Integer limit) {
+        ResourceType sourceType = fromType != null ? ResourceType.fromIdPrefix(fromType) : null;
+        ResourceType targetType = toType != null ? ResourceType.fromIdPrefix(toType) : null;
+        boolean backward = to != null && (from != null || sourceType != null);
+        boolean forward = to == null && from != null && targetType != null;
+        if (!backward && !forward) {
+            return ResponseEntity.badRequest().build();
+        }
+        PathPage page = query.paths(from, to, sourceType, targetType, depth, offset, limit);
+        return page != null ? ResponseEntity.ok(page) : ResponseEntity.notFound().build();
     }
 
+    /**
+     * Nodes of some types and the edges between them, ordered by namespace and id.
+     *
+     * @param namespace namespaces to include; all when absent
+     * @param type      types to include; all when absent
+     * @param label     pod labels to require, e.g. {@code ?label=app=web&label=tier=frontend}; other types keep no
+     *                  labels and are not filtered by them
+     * @param limit     nodes per page, at most {@code topology.query.page-size} (also the default)
+     * @return 400 for an unknown type or a label without {@code =}
+     */
+    @GetMapping("/query/subgraph")
+    public ResponseEntity<GraphPage> getSubgraph(@RequestParam(required = false) List<String> namespace,
+                                                 @RequestParam(required = false) List<String> type,
+                                                 @RequestParam(required = false) List<String> label,
+                                                 @RequestParam(required = false) Integer offset,
+                                                 @RequestParam(required = false) Integer limit) {
+        Set<ResourceType> types = types(type);
+        Map<String, String> labels = labels(label);
+        if (types == null || labels == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(query.subgraph(NamespaceFilter.of(namespace), types, labels, offset, limit));
+    }
+
+    // Types named as in node ids; empty when none are given, null if one is unknown
+    private static Set<ResourceType> types(List<String> names) {
+        Set<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+        if (names != null) {
+            for (String name : names) {
+                ResourceType type = ResourceType.fromIdPrefix(name);
+                if (type == null) {
+                    return null;
+                }
+                types.add(type);
+            }
+        }
+        return types;
+    }
+
+    private static TopologyQuery.Direction direction(String name) {
+        for (TopologyQuery.Direction direction : TopologyQuery.Direction.values()) {
+            if (direction.name().equals(name.toUpperCase(Locale.ROOT))) {
+                return direction;
+            }
+        }
+        return null;
+    }
+
+    // "key=value" pairs; null if one has no '='
+    private static Map<String, String> labels(List<String> pairs) {
+        Map<String, String> labels = new HashMap<>();
+        if (pairs != null) {
+            for (String pair : pairs) {
+                int separator = pair.indexOf('=');
+                if (separator <= 0) {
+                    return null;
+                }
+                labels.put(pair.substring(0, separator), pair.substring(separator + 1));
+            }
+        }
+        return labels;
+    }
 }
@@ -0,0 +1,22 @@
+package com.raushan.k8smapper.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Message sent by a client over /ws/topology.
+ * <ul>
+ *     <li>{@code {"type":"resync","revision":41}}: the client saw a revision gap and needs a fresh snapshot</li>
+ *     <li>{@code {"type":"refresh"}}: the user asked for a reload, answered with a snapshot as well</li>
+ *     <li>{@code {"type":"subscribe","namespaces":["shop","payments"]}} or
+ *     {@code {"type":"subscribe","namespaceSelector":{"team":"checkout"}}}: only send these namespaces from now on,
+ *     starting with a snapshot of them. A selector is re-evaluated whenever namespace labels change. A subscribe
+ *     with neither field goes back to all namespaces. Adding {@code "aggregate":true} switches to the aggregated view,
+ *     in which large pod sets are collapsed into group nodes.</li>
+ *     <li>{@code {"type":"expand","group":"podgroup:<uid>"}}: send the pods and edges of a collapsed group, answered
+ *     with a {@link PodGroupExpansion}. Fetch it again when the group node changes.</li>
+ * </ul>
+ */
+public record ClientMessage(String type, Long revision, List<String> namespaces,
+                            Map<String, String> namespaceSelector, Boolean aggregate, String group) {
+}
@@ -0,0 +1,7 @@
+package com.raushan.k8smapper.model;
+
+/**
+ * Totals over every frame and snapshot body compressed since startup. {@code ratio} is compressed over original size.
+ */
+public record CompressionStats(long framesCompressed, long bytesIn, long bytesOut, double ratio, long cpuMillis) {
+}
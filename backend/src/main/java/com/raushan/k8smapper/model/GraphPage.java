@@ -0,0 +1,13 @@
+package com.raushan.k8smapper.model;
+
+import java.util.List;
+
+/**
+ * One page of the nodes a graph query matched, with the edges leaving them towards other matched nodes, so every edge
+ * of the result appears on exactly one page. {@code total} counts the matched nodes; {@code truncated} is set when a
+ * limit left further matches out; {@code nextOffset} is null on the last page. The graph may have moved past
+ * {@code revision}, the last published one, by the time the query ran.
+ */
+public record GraphPage(long revision, List<TopologyNode> nodes, List<TopologyEdge> edges, int total,
+                        boolean truncated, Integer nextOffset) {
+}
@@ -0,0 +1,10 @@
+package com.raushan.k8smapper.model;
+
+/**
+ * Range of revisions the history can rebuild, from the oldest retained keyframe to the latest recorded revision.
+ * Timestamps are epoch millis. While nothing has been recorded the revisions and timestamps are -1, the keyframe,
+ * patch and byte counts 0, and {@code capacity} is the size of the buffer either way.
+ */
+public record HistoryWindow(long oldestRevision, long oldestTimestamp, long newestRevision, long newestTimestamp,
+                            int keyframes, int patches, long bytesUsed, long capacity) {
+}
@@ -0,0 +1,18 @@
+package com.raushan.k8smapper.model;
+
+import java.util.List;
+
+/**
+ * Resources affected by a change to {@code root}: everything depending on it directly or through other dependents,
+ * nearest first, as of store revision {@code storeRevision}. {@code truncated} is set when the depth or result limit
+ * left further dependents out.
+ */
+public record ImpactReport(TopologyNode root, long storeRevision, int depth, boolean truncated,
+                           List<Dependent> dependents) {
+
+    /**
+     * A resource {@code distance} hops from the root, depending on the node {@code via}.
+     */
+    public record Dependent(TopologyNode node, int distance, String via) {
+    }
+}
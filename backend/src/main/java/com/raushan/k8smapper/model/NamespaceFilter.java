@@ -0,0 +1,20 @@
+package com.raushan.k8smapper.model;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Namespaces a client wants to see. {@link #ALL} when it did not narrow them down.
+ */
+public record NamespaceFilter(Set<String> namespaces) {
+
+    public static final NamespaceFilter ALL = new NamespaceFilter(null);
+
+    public static NamespaceFilter of(Collection<String> namespaces) {
+        return namespaces == null ? ALL : new NamespaceFilter(Set.copyOf(namespaces));
+    }
+
+    public boolean includes(String namespace) {
+        return namespaces == null || namespaces.contains(namespace);
+    }
+}
@@ -0,0 +1,36 @@
+package com.raushan.k8smapper.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PatchOp(Op op, String namespace, TopologyNode node, String id, TopologyEdge edge) {
+
+    public enum Op {
+        @JsonProperty("addNode") ADD_NODE,
+        @JsonProperty("updateNode") UPDATE_NODE,
+        @JsonProperty("removeNode") REMOVE_NODE,
+        @JsonProperty("addEdge") ADD_EDGE,
+        @JsonProperty("removeEdge") REMOVE_EDGE
+    }
+
+    public static PatchOp addNode(TopologyNode node) {
+        return new PatchOp(Op.ADD_NODE, node.getNamespace(), node, null, null);
+    }
+
+    public static PatchOp updateNode(TopologyNode node) {
+        return new PatchOp(Op.UPDATE_NODE, node.getNamespace(), node, null, null);
+    }
+
+    public static PatchOp removeNode(String namespace, String id) {
+        return new PatchOp(Op.REMOVE_NODE, namespace, null, id, null);
+    }
+
+    public static PatchOp addEdge(String namespace, TopologyEdge edge) {
+        return new PatchOp(Op.ADD_EDGE, namespace, null, null, edge);
+    }
+
+    public static PatchOp removeEdge(String namespace, TopologyEdge edge) {
+        return new PatchOp(Op.REMOVE_EDGE, namespace, null, null, edge);
+    }
+}
@@ -0,0 +1,11 @@
+package com.raushan.k8smapper.model;
+
+import java.util.List;
+
+/**
+ * One page of shortest paths, each running from a source node along the edges to the target node, shortest first.
+ * Fields other than {@code paths} are as in {@link GraphPage}, counting paths instead of nodes.
+ */
+public record PathPage(long revision, List<List<TopologyNode>> paths, int total, boolean truncated,
+                       Integer nextOffset) {
+}
@@ -0,0 +1,16 @@
+package com.raushan.k8smapper.model;
+
+import java.util.List;
+
+/**
+ * Contents of a collapsed pod group at {@code revision}: its pods and every edge touching them, for a client to draw
+ * in place of the group node. Sent over /ws/topology in reply to an {@code expand} message, and by
+ * {@code GET /api/topology/groups/{id}}.
+ */
+public record PodGroupExpansion(String type, long revision, String group, List<TopologyNode> nodes,
+                                List<TopologyEdge> edges) {
+
+    public PodGroupExpansion(long revision, String group, List<TopologyNode> nodes, List<TopologyEdge> edges) {
+        this("group", revision, group, nodes, edges);
+    }
+}
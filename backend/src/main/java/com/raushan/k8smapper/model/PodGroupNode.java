@@ -0,0 +1,35 @@
+package com.raushan.k8smapper.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.Map;
+
+/**
+ * Pods sharing an owner, shown as one node in the aggregated view once there are at least
+ * {@code topology.aggregation.pod-threshold} of them. Edges to any of the pods point to this node instead.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class PodGroupNode extends TopologyNode {
+    // Node id of the owner, e.g. "replicaset:<uid>", whether or not the owner is in the graph
+    private String owner;
+    private int pods;
+    // Pods per status phase ("Unknown" when not reported yet), and scheduled pods per cluster node
+    private Map<String, Integer> phases;
+    private Map<String, Integer> nodes;
+
+    public PodGroupNode() {
+        super();
+        setType(ResourceType.POD_GROUP);
+    }
+
+    public PodGroupNode(String id, String name, String namespace, String owner, int pods,
+                        Map<String, Integer> phases, Map<String, Integer> nodes) {
+        super(id, name, namespace, ResourceType.POD_GROUP);
+        this.owner = owner;
+        this.pods = pods;
+        this.phases = phases;
+        this.nodes = nodes;
+    }
+}
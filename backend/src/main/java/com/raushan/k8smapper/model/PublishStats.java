@@ -0,0 +1,4 @@
+package com.raushan.k8smapper.model;
+
+public record PublishStats(long eventsReceived, long graphsBuilt, boolean pending) {
+}
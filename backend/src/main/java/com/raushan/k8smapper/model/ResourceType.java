@@ -1,5 +1,52 @@
 package com.raushan.k8smapper.model;
 
 public enum ResourceType {
-    POD, INGRESS, SERVICE, DEPLOYMENT, REPLICASET, SECRETS, CONFIGMAP, PVC, PV
+    POD("pod", "Pod"),
+    INGRESS("ingress", "Ingress"),
+    SERVICE("service", "Service"),
+    DEPLOYMENT("deployment", "Deployment"),
+    REPLICASET("replicaset", "ReplicaSet"),
+    SECRETS("secret", "Secret"),
+    CONFIGMAP("configmap", "ConfigMap"),
+    PVC("pvc", "PersistentVolumeClaim"),
+    PV("pv", "PersistentVolume"),
+    // Pods of one owner collapsed into a single node by the aggregated view; never stored, so no Kubernetes kind
+    POD_GROUP("podgroup", null);
+
+    private final String idPrefix;
+    private final String kind;
+
+    ResourceType(String idPrefix, String kind) {
+        this.idPrefix = idPrefix;
+        this.kind = kind;
+    }
+
+    // Graph node id for a resource of this type, e.g. "pod:<uid>"
+    public String nodeId(String uid) {
+        return idPrefix + ":" + uid;
+    }
+
+    /**
+     * @return the type whose Kubernetes kind (as used in ownerReferences) is {@code kind}, or null if not tracked
+     */
+    public static ResourceType fromKind(String kind) {
+        for (ResourceType type : values()) {
+            if (type.kind != null && type.kind.equals(kind)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the type whose node ids start with {@code idPrefix}, e.g. "configmap", or null if there is none
+     */
+    public static ResourceType fromIdPrefix(String idPrefix) {
+        for (ResourceType type : values()) {
+            if (type.idPrefix.equals(idPrefix)) {
+                return type;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,5 @@
+package com.raushan.k8smapper.model;
+
+public record SessionStats(String sessionId, long lastRevisionSent, int queueDepth, long sent, long dropped,
+                           long overflows) {
+}
@@ -0,0 +1,14 @@
+package com.raushan.k8smapper.model;
+
+import java.util.List;
+
+/**
+ * Changes that take a client from {@code baseRevision} to {@code revision}.
+ * Ops carry the final state of every touched node and edge, so applying them is idempotent.
+ */
+public record TopologyPatch(String type, long baseRevision, long revision, List<PatchOp> ops) {
+
+    public TopologyPatch(long baseRevision, long revision, List<PatchOp> ops) {
+        this("patch", baseRevision, revision, ops);
+    }
+}
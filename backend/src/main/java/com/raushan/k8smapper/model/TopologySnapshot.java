@@ -0,0 +1,13 @@
+package com.raushan.k8smapper.model;
+
+import java.util.Map;
+
+/**
+ * Full graph at a given revision. Sent on connect and whenever a client reports a revision gap.
+ */
+public record TopologySnapshot(String type, long revision, Map<String, NamespaceGraph> namespaces) {
+
+    public TopologySnapshot(long revision, Map<String, NamespaceGraph> namespaces) {
+        this("snapshot", revision, namespaces);
+    }
+}
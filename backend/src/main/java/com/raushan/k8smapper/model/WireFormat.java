@@ -0,0 +1,47 @@
+package com.raushan.k8smapper.model;
+
+import java.util.Arrays;
+
+/**
+ * Encodings topology snapshots and patches can be sent in. WebSocket clients pick one through the subprotocol they
+ * offer on connect, REST clients through {@code Accept}. JSON is the default for both.
+ */
+public enum WireFormat {
+    JSON("topology.json", "application/json"),
+    // Repeated strings (ids, types, namespaces) are sent once per frame and referenced afterwards (CBOR stringref)
+    CBOR("topology.cbor", "application/cbor");
+
+    // Appended to a subprotocol to have large frames sent gzipped
+    public static final String GZIP_SUFFIX = ".gz";
+
+    private final String subprotocol;
+    private final String mediaType;
+
+    WireFormat(String subprotocol, String mediaType) {
+        this.subprotocol = subprotocol;
+        this.mediaType = mediaType;
+    }
+
+    public String subprotocol() {
+        return subprotocol;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    public static WireFormat forSubprotocol(String subprotocol) {
+        String base = isCompressed(subprotocol)
+                ? subprotocol.substring(0, subprotocol.length() - GZIP_SUFFIX.length()) : subprotocol;
+        return Arrays.stream(values()).filter(format -> format.subprotocol.equals(base)).findFirst()
+                .orElse(JSON);
+    }
+
+    public static boolean isCompressed(String subprotocol) {
+        return subprotocol != null && subprotocol.endsWith(GZIP_SUFFIX);
+    }
+
+    public static WireFormat forAccept(String accept) {
+        return accept != null && accept.contains(CBOR.mediaType) ? CBOR : JSON;
+    }
+}
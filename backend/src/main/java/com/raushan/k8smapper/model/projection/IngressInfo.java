@@ -0,0 +1,33 @@
+package com.raushan.k8smapper.model.projection;
+
+import io.fabric8.kubernetes.api.model.networking.v1.HTTPIngressPath;
+import io.fabric8.kubernetes.api.model.networking.v1.HTTPIngressRuleValue;
+import io.fabric8.kubernetes.api.model.networking.v1.Ingress;
+import io.fabric8.kubernetes.api.model.networking.v1.IngressRule;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static com.raushan.k8smapper.model.projection.Projections.nullToEmpty;
+
+/**
+ * Ingress reduced to the names of the Services its rules route to.
+ */
+public record IngressInfo(String uid, String name, Set<String> backends) implements ProjectedResource {
+
+    public static IngressInfo from(Ingress ing) {
+        Set<String> names = new LinkedHashSet<>();
+        if (ing.getSpec() != null) {
+            for (IngressRule rule : nullToEmpty(ing.getSpec().getRules())) {
+                HTTPIngressRuleValue http = rule.getHttp();
+                if (http == null) continue;
+                for (HTTPIngressPath path : nullToEmpty(http.getPaths())) {
+                    if (path.getBackend() != null && path.getBackend().getService() != null) {
+                        names.add(path.getBackend().getService().getName());
+                    }
+                }
+            }
+        }
+        return new IngressInfo(ing.getMetadata().getUid(), ing.getMetadata().getName(), Projections.names(names));
+    }
+}
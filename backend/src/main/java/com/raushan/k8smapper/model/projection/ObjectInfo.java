@@ -0,0 +1,17 @@
+package com.raushan.k8smapper.model.projection;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+
+import java.util.List;
+
+/**
+ * Projection for kinds the graph only needs identity and ownership of: Deployments, ReplicaSets, ConfigMaps and
+ * Secrets.
+ */
+public record ObjectInfo(String uid, String name, List<OwnerRef> ownerRefs) implements ProjectedResource {
+
+    public static ObjectInfo from(HasMetadata resource) {
+        return new ObjectInfo(resource.getMetadata().getUid(), resource.getMetadata().getName(),
+                Projections.ownerRefs(resource));
+    }
+}
@@ -0,0 +1,4 @@
+package com.raushan.k8smapper.model.projection;
+
+public record OwnerRef(String kind, String uid) {
+}
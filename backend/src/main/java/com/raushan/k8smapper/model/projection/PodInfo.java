@@ -0,0 +1,48 @@
+package com.raushan.k8smapper.model.projection;
+
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.EnvFromSource;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodSpec;
+import io.fabric8.kubernetes.api.model.Volume;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.raushan.k8smapper.model.projection.Projections.nullToEmpty;
+
+/**
+ * Pod fields used by the graph: labels for Service selectors, owners, and the ConfigMaps, Secrets and claims it
+ * mounts or loads through envFrom.
+ */
+public record PodInfo(String uid, String name, Map<String, String> labels, List<OwnerRef> ownerRefs,
+                      Set<String> configMapRefs, Set<String> secretRefs, Set<String> claimRefs,
+                      String phase, String nodeName) implements ProjectedResource {
+
+    public static PodInfo from(Pod pod) {
+        Set<String> configMaps = new LinkedHashSet<>();
+        Set<String> secrets = new LinkedHashSet<>();
+        Set<String> claims = new LinkedHashSet<>();
+        PodSpec spec = pod.getSpec();
+        if (spec != null) {
+            for (Volume vol : nullToEmpty(spec.getVolumes())) {
+                if (vol.getConfigMap() != null) configMaps.add(vol.getConfigMap().getName());
+                if (vol.getSecret() != null) secrets.add(vol.getSecret().getSecretName());
+                if (vol.getPersistentVolumeClaim() != null) claims.add(vol.getPersistentVolumeClaim().getClaimName());
+            }
+            for (Container container : nullToEmpty(spec.getContainers())) {
+                for (EnvFromSource envFrom : nullToEmpty(container.getEnvFrom())) {
+                    if (envFrom.getConfigMapRef() != null) configMaps.add(envFrom.getConfigMapRef().getName());
+                    if (envFrom.getSecretRef() != null) secrets.add(envFrom.getSecretRef().getName());
+                }
+            }
+        }
+        return new PodInfo(pod.getMetadata().getUid(), pod.getMetadata().getName(),
+                Projections.labels(pod.getMetadata().getLabels()), Projections.ownerRefs(pod),
+                Projections.names(configMaps), Projections.names(secrets), Projections.names(claims),
+                Projections.intern(pod.getStatus() != null ? pod.getStatus().getPhase() : null),
+                Projections.intern(spec != null ? spec.getNodeName() : null));
+    }
+}
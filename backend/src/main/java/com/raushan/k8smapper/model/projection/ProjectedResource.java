@@ -0,0 +1,18 @@
+package com.raushan.k8smapper.model.projection;
+
+import java.util.List;
+
+/**
+ * Compact, immutable copy of the few fields of a Kubernetes object that the topology graph needs. The store keeps
+ * only these, never the full fabric8 objects with their data, annotations and managedFields.
+ */
+public interface ProjectedResource {
+    String uid();
+
+    String name();
+
+    // Owners of this resource; empty for kinds whose ownership the graph does not follow
+    default List<OwnerRef> ownerRefs() {
+        return List.of();
+    }
+}
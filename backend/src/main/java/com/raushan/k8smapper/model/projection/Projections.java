@@ -0,0 +1,72 @@
+package com.raushan.k8smapper.model.projection;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.OwnerReference;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Shared helpers for building projections. Strings that repeat across thousands of objects (label keys and values,
+ * referenced names, phases, node names) are interned so each distinct value is held once.
+ */
+final class Projections {
+
+    private Projections() {
+    }
+
+    static String intern(String value) {
+        return value != null ? value.intern() : null;
+    }
+
+    static Map<String, String> labels(Map<String, String> labels) {
+        if (labels == null || labels.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> interned = new HashMap<>(labels.size() * 2);
+        labels.forEach((key, value) -> {
+            if (key != null && value != null) {
+                interned.put(key.intern(), value.intern());
+            }
+        });
+        return Map.copyOf(interned);
+    }
+
+    static List<OwnerRef> ownerRefs(HasMetadata resource) {
+        List<OwnerReference> owners = resource.getMetadata().getOwnerReferences();
+        if (owners == null || owners.isEmpty()) {
+            return List.of();
+        }
+        // Plain loops here and below: projection runs on every informer event
+        List<OwnerRef> refs = new ArrayList<>(owners.size());
+        for (OwnerReference owner : owners) {
+            if (owner.getKind() != null && owner.getUid() != null) {
+                refs.add(new OwnerRef(owner.getKind().intern(), owner.getUid()));
+            }
+        }
+        return List.copyOf(refs);
+    }
+
+    // Interned, immutable copy without nulls
+    static Set<String> names(Set<String> names) {
+        names.remove(null);
+        if (names.isEmpty()) {
+            return Set.of();
+        }
+        String[] interned = new String[names.size()];
+        int i = 0;
+        for (String name : names) {
+            interned[i++] = name.intern();
+        }
+        return Set.of(interned);
+    }
+
+    static <T> List<T> nullToEmpty(List<T> list) {
+        return Objects.requireNonNullElse(list, Collections.emptyList());
+    }
+}
@@ -0,0 +1,16 @@
+package com.raushan.k8smapper.model.projection;
+
+import io.fabric8.kubernetes.api.model.ObjectReference;
+import io.fabric8.kubernetes.api.model.PersistentVolume;
+
+/**
+ * PersistentVolume with the namespace of the claim bound to it, null while unbound.
+ */
+public record PvInfo(String uid, String name, String claimNamespace) implements ProjectedResource {
+
+    public static PvInfo from(PersistentVolume pv) {
+        ObjectReference claimRef = pv.getSpec() != null ? pv.getSpec().getClaimRef() : null;
+        return new PvInfo(pv.getMetadata().getUid(), pv.getMetadata().getName(),
+                claimRef != null ? Projections.intern(claimRef.getNamespace()) : null);
+    }
+}
@@ -0,0 +1,11 @@
+package com.raushan.k8smapper.model.projection;
+
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
+
+public record PvcInfo(String uid, String name, String volumeName) implements ProjectedResource {
+
+    public static PvcInfo from(PersistentVolumeClaim pvc) {
+        return new PvcInfo(pvc.getMetadata().getUid(), pvc.getMetadata().getName(),
+                pvc.getSpec() != null ? pvc.getSpec().getVolumeName() : null);
+    }
+}
@@ -0,0 +1,20 @@
+package com.raushan.k8smapper.model.projection;
+
+import io.fabric8.kubernetes.api.model.Service;
+
+import java.util.Map;
+
+public record ServiceInfo(String uid, String name, Map<String, String> selector) implements ProjectedResource {
+
+    public static ServiceInfo from(Service svc) {
+        return new ServiceInfo(svc.getMetadata().getUid(), svc.getMetadata().getName(),
+                Projections.labels(svc.getSpec() != null ? svc.getSpec().getSelector() : null));
+    }
+
+    /**
+     * A Service without a selector selects no pods.
+     */
+    public boolean selects(PodInfo pod) {
+        return !selector.isEmpty() && pod.labels().entrySet().containsAll(selector.entrySet());
+    }
+}
@@ -0,0 +1,14 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.model.projection.ProjectedResource;
+
+/**
+ * A stored resource together with its type and the namespace it is filed under.
+ */
+public record IndexedResource(ResourceType type, String namespace, ProjectedResource resource) {
+
+    public String nodeId() {
+        return type.nodeId(resource.uid());
+    }
+}
@@ -1,133 +1,288 @@
 package com.raushan.k8smapper.service;
 
-import io.fabric8.kubernetes.api.model.*;
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.model.projection.IngressInfo;
+import com.raushan.k8smapper.model.projection.ObjectInfo;
+import com.raushan.k8smapper.model.projection.PodInfo;
+import com.raushan.k8smapper.model.projection.ProjectedResource;
+import com.raushan.k8smapper.model.projection.PvInfo;
+import com.raushan.k8smapper.model.projection.PvcInfo;
+import com.raushan.k8smapper.model.projection.ServiceInfo;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.api.model.PersistentVolume;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.api.model.apps.Deployment;
 import io.fabric8.kubernetes.api.model.apps.ReplicaSet;
 import io.fabric8.kubernetes.api.model.networking.v1.Ingress;
 import lombok.Getter;
 import org.springframework.stereotype.Service;
 
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
-@Getter
+/**
+ * Current state of the watched resources, by namespace and name. Objects are projected on the way in, so only the
+ * fields the topology graph uses are retained (see {@link ProjectedResource}).
+ * <p>
+ * The state is an immutable {@link StoreSnapshot} behind a volatile reference. Writes are serialized: each derives
+ * the next snapshot in O(log n), publishes it and then notifies listeners, which therefore see exactly the state
+ * their change produced. Readers take {@link #snapshot()} once and get a consistent view without any locking; the
+ * getters below read whatever snapshot is current at the time of each call.
+ */
 @Service
 public class K8sTopologyStore {
-    private final Map<String, Map<String, Pod>> podsByNamespace = new ConcurrentHashMap<>();
-    private final Map<String, Map<String, Deployment>> deploymentsByNamespace = new ConcurrentHashMap<>();
-    private final Map<String, Map<String, ReplicaSet>> replicaSetsByNamespace = new ConcurrentHashMap<>();
-    private final Map<String, Map<String, io.fabric8.kubernetes.api.model.Service>> servicesByNamespace = new ConcurrentHashMap<>();
-    private final Map<String, Map<String, Ingress>> ingressesByNamespace = new ConcurrentHashMap<>();
-    private final Map<String, Map<String, ConfigMap>> configMapsByNamespace = new ConcurrentHashMap<>();
-    private final Map<String, Map<String, Secret>> secretsByNamespace = new ConcurrentHashMap<>();
-    private final Map<String, Map<String, PersistentVolumeClaim>> pVCByNamespace = new ConcurrentHashMap<>();
-    private final Map<String, Map<String, PersistentVolume>> pVByNamespace = new ConcurrentHashMap<>();
-
-    // Generic upsert helper
-    private <T> void upsert(Map<String, Map<String, T>> map, String namespace, String name, T obj) {
-        map.computeIfAbsent(namespace, k -> new ConcurrentHashMap<>()).put(name, obj);
-    }
-
-    // Generic remove helper
-    private <T> void remove(Map<String, Map<String, T>> map, String namespace, String name) {
-        Map<String, T> nsMap = map.get(namespace);
-        if (nsMap != null) {
-            nsMap.remove(name);
-            if (nsMap.isEmpty()) {
-                map.remove(namespace);
-            }
+
+    private volatile StoreSnapshot current = StoreSnapshot.EMPTY;
+
+    // Labels of every namespace, for namespace selectors. Namespaces are not graph nodes, so listeners are not
+    // notified; readers compare the version instead.
+    @Getter
+    private final Map<String, Map<String, String>> namespaceLabels = new ConcurrentHashMap<>();
+    private final AtomicLong namespaceLabelsVersion = new AtomicLong();
+
+    private final List<TopologyChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(TopologyChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public StoreSnapshot snapshot() {
+        return current;
+    }
+
+    private void upsert(ResourceType type, String namespace, String name, ProjectedResource obj) {
+        apply(type, namespace, name, obj);
+    }
+
+    private void remove(ResourceType type, String namespace, String name) {
+        apply(type, namespace, name, null);
+    }
+
+    // Listeners run under the lock too, so they observe changes one at a time and in snapshot order
+    private synchronized void apply(ResourceType type, String namespace, String name, ProjectedResource obj) {
+        StoreSnapshot before = current;
+        ProjectedResource previous = before.get(type, namespace, name);
+        StoreSnapshot after = before.with(type, namespace, name, previous, obj);
+        if (after == before) {
+            return;
+        }
+        current = after;
+        // Listeners see resources in the namespace whose graph holds them; an unbound PersistentVolume is in none
+        String previousNamespace = StoreSnapshot.filedUnder(type, namespace, previous);
+        String currentNamespace = StoreSnapshot.filedUnder(type, namespace, obj);
+        if (currentNamespace != null) {
+            notifyListeners(type, currentNamespace, previousNamespace != null ? previous : null, obj);
+        } else if (previousNamespace != null) {
+            notifyListeners(type, previousNamespace, previous, null);
+        }
+    }
+
+    private void notifyListeners(ResourceType type, String namespace, ProjectedResource previous,
+                                 ProjectedResource current) {
+        for (TopologyChangeListener listener : listeners) {
+            listener.onChange(type, namespace, previous, current);
         }
     }
 
+    // Reads of the current snapshot
+
+    public Map<String, Map<String, PodInfo>> getPodsByNamespace() {
+        return current.getPodsByNamespace();
+    }
+
+    public Map<String, Map<String, ObjectInfo>> getDeploymentsByNamespace() {
+        return current.getDeploymentsByNamespace();
+    }
+
+    public Map<String, Map<String, ObjectInfo>> getReplicaSetsByNamespace() {
+        return current.getReplicaSetsByNamespace();
+    }
+
+    public Map<String, Map<String, ServiceInfo>> getServicesByNamespace() {
+        return current.getServicesByNamespace();
+    }
+
+    public Map<String, Map<String, IngressInfo>> getIngressesByNamespace() {
+        return current.getIngressesByNamespace();
+    }
+
+    public Map<String, Map<String, ObjectInfo>> getConfigMapsByNamespace() {
+        return current.getConfigMapsByNamespace();
+    }
+
+    public Map<String, Map<String, ObjectInfo>> getSecretsByNamespace() {
+        return current.getSecretsByNamespace();
+    }
+
+    public Map<String, Map<String, PvcInfo>> getPVCByNamespace() {
+        return current.getPVCByNamespace();
+    }
+
+    public Map<String, Map<String, PvInfo>> getPVByNamespace() {
+        return current.getPVByNamespace();
+    }
+
+    public OwnerIndex getOwnerIndex() {
+        return current.getOwnerIndex();
+    }
+
+    public LabelIndex getPodLabelIndex() {
+        return current.getPodLabelIndex();
+    }
+
+    public VolumeIndex getVolumeIndex() {
+        return current.getVolumeIndex();
+    }
+
+    public ReferenceIndex getReferenceIndex() {
+        return current.getReferenceIndex();
+    }
+
+    /**
+     * Pods in the namespace matched by a Service selector, resolved through the label index.
+     */
+    public List<PodInfo> selectPods(String namespace, Map<String, String> selector) {
+        return current.selectPods(namespace, selector);
+    }
+
+    /**
+     * Stored resources in the namespace that name this one, see {@link StoreSnapshot#referrers}.
+     */
+    public List<IndexedResource> referrers(ResourceType type, String namespace, String name) {
+        return current.referrers(type, namespace, name);
+    }
+
+    /**
+     * Claims in any namespace whose {@code spec.volumeName} names the volume.
+     */
+    public List<IndexedResource> claimsForVolume(String volumeName) {
+        return current.claimsForVolume(volumeName);
+    }
+
     // Upsert Methods
     public void upsertPod(String namespace, String name, Pod pod) {
-        upsert(podsByNamespace, namespace, name, pod);
+        upsert(ResourceType.POD, namespace, name, PodInfo.from(pod));
     }
 
     public void upsertDeployment(String namespace, String name, Deployment d) {
-        upsert(deploymentsByNamespace, namespace, name, d);
+        upsert(ResourceType.DEPLOYMENT, namespace, name, ObjectInfo.from(d));
     }
 
     public void upsertReplicaSet(String namespace, String name, ReplicaSet rs) {
-        upsert(replicaSetsByNamespace, namespace, name, rs);
+        upsert(ResourceType.REPLICASET, namespace, name, ObjectInfo.from(rs));
     }
 
     public void upsertService(String namespace, String name, io.fabric8.kubernetes.api.model.Service svc) {
-        upsert(servicesByNamespace, namespace, name, svc);
+        upsert(ResourceType.SERVICE, namespace, name, ServiceInfo.from(svc));
     }
 
     public void upsertIngress(String namespace, String name, Ingress ing) {
-        upsert(ingressesByNamespace, namespace, name, ing);
+        upsert(ResourceType.INGRESS, namespace, name, IngressInfo.from(ing));
     }
 
     public void upsertConfigMap(String namespace, String name, ConfigMap cm) {
-        upsert(configMapsByNamespace, namespace, name, cm);
+        upsert(ResourceType.CONFIGMAP, namespace, name, ObjectInfo.from(cm));
     }
 
     public void upsertSecret(String namespace, String name, Secret sec) {
-        upsert(secretsByNamespace, namespace, name, sec);
+        upsert(ResourceType.SECRETS, namespace, name, ObjectInfo.from(sec));
     }
 
     public void upsertPVC(String namespace, String name, PersistentVolumeClaim pvc) {
-        upsert(pVCByNamespace, namespace, name, pvc);
+        upsert(ResourceType.PVC, namespace, name, PvcInfo.from(pvc));
+    }
+
+    // PersistentVolumes are cluster-scoped: stored by name, and filed under the namespace of their claim once bound
+    public void upsertPV(String name, PersistentVolume pv) {
+        upsert(ResourceType.PV, null, name, PvInfo.from(pv));
     }
 
-    public void upsertPV(String namespace, String name, PersistentVolume pv) {
-        upsert(pVByNamespace, namespace, name, pv);
+    public void upsertNamespace(String name, Namespace namespace) {
+        Map<String, String> labels = Objects.requireNonNullElse(namespace.getMetadata().getLabels(), Map.of());
+        if (!labels.equals(namespaceLabels.put(name, Map.copyOf(labels)))) {
+            namespaceLabelsVersion.incrementAndGet();
+        }
     }
 
     // Remove Methods
     public void removePod(String namespace, String name) {
-        remove(podsByNamespace, namespace, name);
+        remove(ResourceType.POD, namespace, name);
     }
 
     public void removeDeployment(String namespace, String name) {
-        remove(deploymentsByNamespace, namespace, name);
+        remove(ResourceType.DEPLOYMENT, namespace, name);
     }
 
     public void removeReplicaSet(String namespace, String name) {
-        remove(replicaSetsByNamespace, namespace, name);
+        remove(ResourceType.REPLICASET, namespace, name);
     }
 
     public void removeService(String namespace, String name) {
-        remove(servicesByNamespace, namespace, name);
+        remove(ResourceType.SERVICE, namespace, name);
     }
 
     public void removeIngress(String namespace, String name) {
-        remove(ingressesByNamespace, namespace, name);
+        remove(ResourceType.INGRESS, namespace, name);
     }
 
     public void removeConfigMap(String namespace, String name) {
-        remove(configMapsByNamespace, namespace, name);
+        remove(ResourceType.CONFIGMAP, namespace, name);
     }
 
     public void removeSecret(String namespace, String name) {
-        remove(secretsByNamespace, namespace, name);
+        remove(ResourceType.SECRETS, namespace, name);
     }
 
     public void removePVC(String namespace, String name) {
-        remove(pVCByNamespace, namespace, name);
+        remove(ResourceType.PVC, namespace, name);
+    }
+
+    public void removePV(String name) {
+        remove(ResourceType.PV, null, name);
+    }
+
+    public void removeNamespace(String name) {
+        if (namespaceLabels.remove(name) != null) {
+            namespaceLabelsVersion.incrementAndGet();
+        }
+    }
+
+    // Incremented on every change to namespaceLabels
+    public long getNamespaceLabelsVersion() {
+        return namespaceLabelsVersion.get();
+    }
+
+    /**
+     * Names of the namespaces whose labels contain every entry of the selector.
+     */
+    public Set<String> namespacesMatching(Map<String, String> selector) {
+        Set<String> names = new HashSet<>();
+        namespaceLabels.forEach((name, labels) -> {
+            if (labels.entrySet().containsAll(selector.entrySet())) {
+                names.add(name);
+            }
+        });
+        return names;
     }
 
-    public void removePV(String namespace, String name) {
-        remove(pVByNamespace, namespace, name);
+    /**
+     * Number of stored resources of each type, per namespace.
+     */
+    public Map<ResourceType, Map<String, Integer>> counts() {
+        return current.counts();
     }
 
     // Utility: get all distinct namespaces used
     public Set<String> getNamespaces() {
-        return Stream.of(
-                podsByNamespace.keySet(),
-                deploymentsByNamespace.keySet(),
-                replicaSetsByNamespace.keySet(),
-                servicesByNamespace.keySet(),
-                ingressesByNamespace.keySet(),
-                configMapsByNamespace.keySet(),
-                secretsByNamespace.keySet(),
-                pVCByNamespace.keySet(),
-                pVByNamespace.keySet()
-        ).flatMap(Set::stream).collect(Collectors.toSet());
+        return current.getNamespaces();
     }
 }
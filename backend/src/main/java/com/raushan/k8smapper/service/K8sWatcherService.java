@@ -1,147 +1,212 @@
 package com.raushan.k8smapper.service;
 
-import com.raushan.k8smapper.model.ResourceType;
-import com.raushan.k8smapper.websocket.TopologyWebSocketPublisher;
+import com.raushan.k8smapper.config.TopologyProperties;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.api.model.PersistentVolume;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
 import io.fabric8.kubernetes.api.model.Pod;
-import io.fabric8.kubernetes.client.*;
-import io.fabric8.kubernetes.client.dsl.*;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.api.model.apps.ReplicaSet;
+import io.fabric8.kubernetes.api.model.networking.v1.Ingress;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.dsl.Informable;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.cache.ReducedStateItemStore;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.logging.Logger;
-
+import java.util.stream.Stream;
+
+/**
+ * Feeds the topology store from one cluster-wide shared informer per resource type.
+ * <p>
+ * Each informer lists in pages of {@code topology.informer.list-page-size}, then watches from the resourceVersion of
+ * that list. A dropped watch resumes from the last resourceVersion seen, and an expired one (410 Gone) triggers a
+ * fresh paged re-list that is diffed against the informer cache, so only real changes reach the store. Namespaces
+ * created after startup are covered without any extra watch.
+ */
 @Service
 @RequiredArgsConstructor
 public class K8sWatcherService {
 
     private final Logger log = Logger.getLogger(K8sWatcherService.class.getName());
+    private final KubernetesClient client;
     private final K8sTopologyStore topologyStore;
-    private final TopologyWebSocketPublisher topologyWebSocketPublisher;
+    private final TopologyPublishScheduler publishScheduler;
+    private final TopologyProperties properties;
+    private final TopologyCheckpoint checkpoint;
+    private final TopologyMetrics metrics;
+
+    // By kind, which is also the checkpoint section name
+    private final Map<String, SharedIndexInformer<? extends HasMetadata>> informers = new ConcurrentHashMap<>();
+    private volatile boolean changedSinceCheckpoint;
+
+    @FunctionalInterface
+    private interface Upsert<T> {
+        void accept(String namespace, String name, T resource);
+    }
 
     @PostConstruct
     public void watchAllResources() {
-        KubernetesClient client = new KubernetesClientBuilder().build();
-
         try {
-            List<Namespace> namespaces = client.namespaces().list().getItems();
-            for (var ns : namespaces) {
-                String namespace = ns.getMetadata().getName();
-                watchResource(client.pods().inNamespace(namespace), ResourceType.POD, (action, pod) -> {
-                    String name = pod.getMetadata().getName();
-                    if (action == Watcher.Action.DELETED) {
-                        topologyStore.removePod(namespace, name);
-                    } else {
-                        topologyStore.upsertPod(namespace, name, pod);
-                    }
-                });
-
-                watchResource(client.apps().deployments().inNamespace(namespace), ResourceType.DEPLOYMENT,
-                        (action, deploy) -> {
-                            String name = deploy.getMetadata().getName();
-                            if (action == Watcher.Action.DELETED) {
-                                topologyStore.removeDeployment(namespace, name);
-                            } else {
-                                topologyStore.upsertDeployment(namespace, name, deploy);
-                            }
-                        });
-
-                watchResource(client.apps().replicaSets().inNamespace(namespace), ResourceType.REPLICASET, (action, rs) -> {
-                    String name = rs.getMetadata().getName();
-                    if (action == Watcher.Action.DELETED) {
-                        topologyStore.removeReplicaSet(namespace, name);
-                    } else {
-                        topologyStore.upsertReplicaSet(namespace, name, rs);
-                    }
-                });
-
-                watchResource(client.services().inNamespace(namespace), ResourceType.SERVICE, (action, svc) -> {
-                    String name = svc.getMetadata().getName();
-                    if (action == Watcher.Action.DELETED) {
-                        topologyStore.removeService(namespace, name);
-                    } else {
-                        topologyStore.upsertService(namespace, name, svc);
-                    }
-                });
+            inform(client.pods().inAnyNamespace(), Pod.class,
+                    topologyStore::upsertPod, topologyStore::removePod,
+                    "metadata.labels", "metadata.ownerReferences", "spec.volumes", "spec.containers",
+                    "spec.nodeName", "status.phase");
+            inform(client.apps().deployments().inAnyNamespace(), Deployment.class,
+                    topologyStore::upsertDeployment, topologyStore::removeDeployment);
+            inform(client.apps().replicaSets().inAnyNamespace(), ReplicaSet.class,
+                    topologyStore::upsertReplicaSet, topologyStore::removeReplicaSet,
+                    "metadata.ownerReferences");
+            inform(client.services().inAnyNamespace(), io.fabric8.kubernetes.api.model.Service.class,
+                    topologyStore::upsertService, topologyStore::removeService,
+                    "spec.selector");
+            inform(client.network().v1().ingresses().inAnyNamespace(), Ingress.class,
+                    topologyStore::upsertIngress, topologyStore::removeIngress,
+                    "spec.rules");
+            inform(client.configMaps().inAnyNamespace(), ConfigMap.class,
+                    topologyStore::upsertConfigMap, topologyStore::removeConfigMap);
+            inform(client.secrets().inAnyNamespace(), Secret.class,
+                    topologyStore::upsertSecret, topologyStore::removeSecret);
+            inform(client.persistentVolumeClaims().inAnyNamespace(), PersistentVolumeClaim.class,
+                    topologyStore::upsertPVC, topologyStore::removePVC,
+                    "spec.volumeName");
+            // PVs are cluster-scoped: one watch, stored by name. The store files each under its claim's namespace
+            inform(client.persistentVolumes(), PersistentVolume.class, pv -> pv.getMetadata().getName(),
+                    (namespace, name, pv) -> topologyStore.upsertPV(name, pv),
+                    (namespace, name) -> topologyStore.removePV(name),
+                    "spec.claimRef");
+            // Namespaces only matter for their labels, used by namespace-selector subscriptions
+            inform(client.namespaces(), Namespace.class, namespace -> namespace.getMetadata().getName(),
+                    (namespace, name, resource) -> topologyStore.upsertNamespace(name, resource),
+                    (namespace, name) -> topologyStore.removeNamespace(name),
+                    "metadata.labels");
+            checkpoint.schedule(() -> changedSinceCheckpoint ? checkpointSections() : null);
+        } catch (Exception e) {
+            log.severe("Error while setting up resource informers: " + e.getMessage());
+        }
+    }
 
-                watchResource(client.network().v1().ingresses().inNamespace(namespace), ResourceType.INGRESS,
-                        (action, ing) -> {
-                            String name = ing.getMetadata().getName();
-                            if (action == Watcher.Action.DELETED) {
-                                topologyStore.removeIngress(namespace, name);
-                            } else {
-                                topologyStore.upsertIngress(namespace, name, ing);
-                            }
-                        });
+    @PreDestroy
+    public void stop() {
+        if (changedSinceCheckpoint) {
+            checkpoint.save(checkpointSections());
+        }
+        informers.values().forEach(SharedIndexInformer::stop);
+    }
 
-                watchResource(client.configMaps().inNamespace(ns.getFullResourceName()), ResourceType.CONFIGMAP, (action, cm) -> {
-                    String name = cm.getMetadata().getName();
-                    if (action == Watcher.Action.DELETED) {
-                        topologyStore.removeConfigMap(namespace, name);
-                    } else {
-                        topologyStore.upsertConfigMap(namespace, name, cm);
-                    }
-                });
+    private Map<String, TopologyCheckpoint.Section> checkpointSections() {
+        changedSinceCheckpoint = false;
+        Map<String, TopologyCheckpoint.Section> sections = new HashMap<>();
+        informers.forEach((kind, informer) -> sections.put(kind, checkpoint.section(informer.getStore().list())));
+        return sections;
+    }
 
-                watchResource(client.secrets().inNamespace(ns.getFullResourceName()), ResourceType.SECRETS, (action, sec) -> {
-                    String name = sec.getMetadata().getName();
-                    if (action == Watcher.Action.DELETED) {
-                        topologyStore.removeSecret(namespace, name);
-                    } else {
-                        topologyStore.upsertSecret(namespace, name, sec);
-                    }
-                });
+    private <T extends HasMetadata> void inform(Informable<T> resources, Class<T> typeClass, Upsert<T> upsert,
+                                                BiConsumer<String, String> remove, String... fields) {
+        inform(resources, typeClass, resource -> resource.getMetadata().getNamespace(), upsert, remove, fields);
+    }
 
-                watchResource(client.persistentVolumeClaims().inNamespace(namespace), ResourceType.PVC, (action, pvc) -> {
-                    String name = pvc.getMetadata().getName();
-                    if (action == Watcher.Action.DELETED) {
-                        topologyStore.removePVC(namespace, name);
-                    } else {
-                        topologyStore.upsertPVC(namespace, name, pvc);
-                    }
-                });
+    /**
+     * Objects of this kind found in the checkpoint go into the store right away and seed the informer cache. The
+     * informer still starts with a list, but that list is diffed against the seeded cache, so only what changed
+     * while the backend was down produces events.
+     *
+     * @param fields paths kept in the informer cache besides namespace, name, uid and resourceVersion; everything
+     *               else (Secret and ConfigMap data, annotations, managedFields, status) is dropped as it arrives
+     */
+    private <T extends HasMetadata> void inform(Informable<T> resources, Class<T> typeClass,
+                                                Function<T, String> namespaceOf, Upsert<T> upsert,
+                                                BiConsumer<String, String> remove, String... fields) {
+        TopologyProperties.Informer config = properties.getInformer();
+        String kind = typeClass.getSimpleName();
+        String[] valueFields = Stream.concat(Stream.of("metadata.uid"), Arrays.stream(fields)).toArray(String[]::new);
+        SharedIndexInformer<T> informer = resources
+                .withLimit(config.getListPageSize())
+                .runnableInformer(config.getResyncPeriod().toMillis())
+                .itemStore(new ReducedStateItemStore<>(ReducedStateItemStore.NAME_KEY_STATE, typeClass,
+                        client.getKubernetesSerialization(), valueFields));
+        Consumer<T> put = resource -> {
+            String namespace = namespaceOf.apply(resource);
+            if (namespace != null) {
+                upsert.accept(namespace, resource.getMetadata().getName(), resource);
+            }
+        };
+        informer.addEventHandler(new ResourceEventHandler<T>() {
+            @Override
+            public void onAdd(T resource) {
+                apply(kind, "ADDED", () -> put.accept(resource));
+            }
 
-                watchResource(client.persistentVolumes(), ResourceType.PV, (action, pv) -> {
-                    String name = pv.getMetadata().getName();
-                    if (action == Watcher.Action.DELETED) {
-                        topologyStore.removePV(namespace, name);
-                    } else {
-                        topologyStore.upsertPV(namespace, name, pv);
+            @Override
+            public void onUpdate(T previous, T resource) {
+                // Resync replays the cache with unchanged objects, the store already has those
+                if (Objects.equals(previous.getMetadata().getResourceVersion(),
+                        resource.getMetadata().getResourceVersion())) {
+                    return;
+                }
+                apply(kind, "MODIFIED", () -> {
+                    String previousNamespace = namespaceOf.apply(previous);
+                    if (previousNamespace != null && !previousNamespace.equals(namespaceOf.apply(resource))) {
+                        remove.accept(previousNamespace, previous.getMetadata().getName());
                     }
+                    put.accept(resource);
                 });
             }
-        } catch (Exception e) {
-            log.severe("Error while setting up resource watchers: " + e.getMessage());
-        } finally {
-            client.close();
-        }
-    }
 
-    private <T> void watchResource(NonNamespaceOperation<T, ?, ?> resourceClient, ResourceType resourceType,
-                                   BiConsumer<Watcher.Action, T> handler) {
-        resourceClient.watch(new Watcher<>() {
             @Override
-            public void eventReceived(Action action, T resource) {
-                try {
-                    handler.accept(action, resource);
-                    topologyWebSocketPublisher.publishGraph(topologyStore);
-                    log.info(resourceType + " " + action + " event processed");
-                } catch (Exception e) {
-                    log.severe("Error processing " + resourceType + " event: " + e.getMessage());
-                }
+            public void onDelete(T resource, boolean deletedFinalStateUnknown) {
+                apply(kind, "DELETED", () -> {
+                    String namespace = namespaceOf.apply(resource);
+                    if (namespace != null) {
+                        remove.accept(namespace, resource.getMetadata().getName());
+                    }
+                });
             }
+        });
 
-            @Override
-            public void onClose(WatcherException cause) {
-                if (cause != null) {
-                    log.severe("Watcher closed due to error: " + cause.getMessage());
-                } else {
-                    log.info("Watcher closed gracefully for resource type: " + resourceType);
-                }
+        List<T> restored = checkpoint.restore(kind, typeClass);
+        if (!restored.isEmpty()) {
+            restored.forEach(put);
+            publishScheduler.markDirty();
+            informer.initialState(restored.stream());
+        }
+        informers.put(kind, informer);
+        informer.start().whenComplete((ignored, e) -> {
+            if (e != null) {
+                log.severe("Informer for " + kind + " failed to start: " + e.getMessage());
+            } else {
+                log.info("Informer for " + kind + " synced at resourceVersion "
+                        + informer.lastSyncResourceVersion());
             }
         });
     }
+
+    private void apply(String kind, String action, Runnable change) {
+        try {
+            change.run();
+            changedSinceCheckpoint = true;
+            publishScheduler.markDirty();
+            metrics.event(kind, action);
+            log.fine(() -> kind + " " + action + " event processed");
+        } catch (Exception e) {
+            log.severe("Error processing " + kind + " event: " + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,119 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.model.projection.PodInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from pod label to the uids of the pods carrying it, per namespace
+ * (namespace -> label key -> label value -> pod uids).
+ * <p>
+ * Resolving a selector intersects one posting list per selector entry, starting from the smallest, instead of testing
+ * every pod in the namespace. Immutable and part of a {@link StoreSnapshot}; {@link K8sTopologyStore} derives the next
+ * index on every pod change, copying a few trie nodes per changed label.
+ */
+public final class LabelIndex {
+
+    static final LabelIndex EMPTY = new LabelIndex(PersistentHashMap.empty());
+
+    private final PersistentHashMap<String, PersistentHashMap<String, PersistentHashMap<String, PersistentHashSet<String>>>>
+            postings;
+
+    private LabelIndex(
+            PersistentHashMap<String, PersistentHashMap<String, PersistentHashMap<String, PersistentHashSet<String>>>>
+                    postings) {
+        this.postings = postings;
+    }
+
+    LabelIndex update(String namespace, PodInfo previous, PodInfo current) {
+        Map<String, String> before = previous != null ? previous.labels() : Map.of();
+        Map<String, String> after = current != null ? current.labels() : Map.of();
+        PersistentHashMap<String, PersistentHashMap<String, PersistentHashSet<String>>> byKey =
+                postings.getOrDefault(namespace, PersistentHashMap.empty());
+        PersistentHashMap<String, PersistentHashMap<String, PersistentHashSet<String>>> updated = byKey;
+        if (previous != null) {
+            String uid = previous.uid();
+            boolean sameUid = current != null && current.uid().equals(uid);
+            for (Map.Entry<String, String> label : before.entrySet()) {
+                if (!sameUid || !label.getValue().equals(after.get(label.getKey()))) {
+                    updated = remove(updated, label.getKey(), label.getValue(), uid);
+                }
+            }
+        }
+        if (current != null) {
+            String uid = current.uid();
+            boolean sameUid = previous != null && previous.uid().equals(uid);
+            for (Map.Entry<String, String> label : after.entrySet()) {
+                if (!sameUid || !label.getValue().equals(before.get(label.getKey()))) {
+                    updated = add(updated, label.getKey(), label.getValue(), uid);
+                }
+            }
+        }
+        if (updated == byKey) {
+            return this;
+        }
+        return new LabelIndex(updated.isEmpty() ? postings.minus(namespace) : postings.plus(namespace, updated));
+    }
+
+    /**
+     * @return uids of the pods in the namespace matching every entry of the selector, read-only; empty for an empty
+     * selector. A single-entry selector, the common case, gets the posting list itself without copying it
+     */
+    public Set<String> select(String namespace, Map<String, String> selector) {
+        Map<String, PersistentHashMap<String, PersistentHashSet<String>>> byKey = postings.get(namespace);
+        if (selector.isEmpty() || byKey == null) {
+            return Collections.emptySet();
+        }
+        List<Set<String>> lists = new ArrayList<>(selector.size());
+        for (Map.Entry<String, String> entry : selector.entrySet()) {
+            Map<String, PersistentHashSet<String>> byValue = byKey.get(entry.getKey());
+            Set<String> uids = byValue != null ? byValue.get(entry.getValue()) : null;
+            if (uids == null || uids.isEmpty()) {
+                return Collections.emptySet();
+            }
+            lists.add(uids);
+        }
+        if (lists.size() == 1) {
+            return lists.get(0);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        List<Set<String>> others = lists.subList(1, lists.size());
+        Set<String> result = new HashSet<>();
+        lists.get(0).forEach(uid -> {
+            for (Set<String> other : others) {
+                if (!other.contains(uid)) {
+                    return;
+                }
+            }
+            result.add(uid);
+        });
+        return result;
+    }
+
+    private static PersistentHashMap<String, PersistentHashMap<String, PersistentHashSet<String>>> add(
+            PersistentHashMap<String, PersistentHashMap<String, PersistentHashSet<String>>> byKey,
+            String key, String value, String uid) {
+        PersistentHashMap<String, PersistentHashSet<String>> byValue = byKey.getOrDefault(key, PersistentHashMap.empty());
+        PersistentHashSet<String> uids = byValue.getOrDefault(value, PersistentHashSet.empty());
+        return byKey.plus(key, byValue.plus(value, uids.plus(uid)));
+    }
+
+    private static PersistentHashMap<String, PersistentHashMap<String, PersistentHashSet<String>>> remove(
+            PersistentHashMap<String, PersistentHashMap<String, PersistentHashSet<String>>> byKey,
+            String key, String value, String uid) {
+        PersistentHashMap<String, PersistentHashSet<String>> byValue = byKey.get(key);
+        PersistentHashSet<String> uids = byValue != null ? byValue.get(value) : null;
+        PersistentHashSet<String> remaining = uids != null ? uids.minus(uid) : null;
+        if (remaining == uids) {
+            return byKey;
+        }
+        byValue = remaining.isEmpty() ? byValue.minus(value) : byValue.plus(value, remaining);
+        return byValue.isEmpty() ? byKey.minus(key) : byKey.plus(key, byValue);
+    }
+}
@@ -0,0 +1,115 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.model.projection.OwnerRef;
+import com.raushan.k8smapper.model.projection.ProjectedResource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resolves uids to stored resources and indexes ownerReferences in both directions: a child's owners come from its
+ * own references, an owner's children from the owner uid -> child uids index. Children are indexed by the uid they
+ * reference, whether or not that owner is currently stored, so an owner arriving after its children finds them.
+ * Immutable and part of a {@link StoreSnapshot}; {@link K8sTopologyStore} derives the next index on every change.
+ */
+public final class OwnerIndex {
+
+    static final OwnerIndex EMPTY = new OwnerIndex(PersistentHashMap.empty(), PersistentHashMap.empty());
+
+    private final PersistentHashMap<String, IndexedResource> byUid;
+    private final PersistentHashMap<String, PersistentHashSet<String>> childrenByOwner;
+
+    private OwnerIndex(PersistentHashMap<String, IndexedResource> byUid,
+                       PersistentHashMap<String, PersistentHashSet<String>> childrenByOwner) {
+        this.byUid = byUid;
+        this.childrenByOwner = childrenByOwner;
+    }
+
+    OwnerIndex update(ResourceType type, String namespace, ProjectedResource previous, ProjectedResource current) {
+        PersistentHashMap<String, IndexedResource> resources = byUid;
+        PersistentHashMap<String, PersistentHashSet<String>> children = childrenByOwner;
+        boolean sameUid = previous != null && current != null && previous.uid().equals(current.uid());
+        if (previous != null && !sameUid) {
+            resources = resources.minus(previous.uid());
+        }
+        // Most updates keep the owners, leaving the children index as it is
+        if (!sameUid || !previous.ownerRefs().equals(current.ownerRefs())) {
+            if (previous != null) {
+                for (OwnerRef owner : previous.ownerRefs()) {
+                    if (!sameUid || !current.ownerRefs().contains(owner)) {
+                        PersistentHashSet<String> siblings = children.get(owner.uid());
+                        if (siblings != null) {
+                            siblings = siblings.minus(previous.uid());
+                            children = siblings.isEmpty() ? children.minus(owner.uid())
+                                    : children.plus(owner.uid(), siblings);
+                        }
+                    }
+                }
+            }
+            if (current != null) {
+                for (OwnerRef owner : current.ownerRefs()) {
+                    children = children.plus(owner.uid(),
+                            children.getOrDefault(owner.uid(), PersistentHashSet.empty()).plus(current.uid()));
+                }
+            }
+        }
+        if (current != null) {
+            resources = resources.plus(current.uid(), new IndexedResource(type, namespace, current));
+        }
+        return new OwnerIndex(resources, children);
+    }
+
+    public IndexedResource get(String uid) {
+        return byUid.get(uid);
+    }
+
+    /**
+     * Owners of the resource that are stored in the same namespace under the kind the reference names.
+     */
+    public List<IndexedResource> owners(String namespace, ProjectedResource child) {
+        List<OwnerRef> refs = child.ownerRefs();
+        if (refs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<IndexedResource> owners = new ArrayList<>(refs.size());
+        for (OwnerRef ref : refs) {
+            IndexedResource owner = byUid.get(ref.uid());
+            if (owner != null && owner.namespace().equals(namespace)
+                    && owner.type() == ResourceType.fromKind(ref.kind())) {
+                owners.add(owner);
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * Stored resources in the namespace that reference {@code ownerUid} as an owner of kind {@code ownerType}. The
+     * owner itself does not have to be stored.
+     */
+    public List<IndexedResource> children(String namespace, ResourceType ownerType, String ownerUid) {
+        Set<String> childUids = childrenByOwner.get(ownerUid);
+        if (childUids == null) {
+            return Collections.emptyList();
+        }
+        List<IndexedResource> children = new ArrayList<>(childUids.size());
+        for (String childUid : childUids) {
+            IndexedResource child = byUid.get(childUid);
+            if (child != null && child.namespace().equals(namespace) && references(child, ownerType, ownerUid)) {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    private static boolean references(IndexedResource child, ResourceType ownerType, String ownerUid) {
+        for (OwnerRef ref : child.resource().ownerRefs()) {
+            if (ref.uid().equals(ownerUid) && ResourceType.fromKind(ref.kind()) == ownerType) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
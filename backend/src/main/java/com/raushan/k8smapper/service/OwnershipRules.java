@@ -0,0 +1,42 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.model.ResourceType;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which ownerReferences become graph edges. Each owned type lists the owner types drawn as an edge to it. Types in
+ * {@link #DERIVED} also get an edge from their owner's owner, e.g. Deployment -> Pod through the ReplicaSet.
+ * Following another controller chain (StatefulSet -> Pod, CronJob -> Job -> Pod) only takes new entries here.
+ */
+final class OwnershipRules {
+
+    // Owned type -> owner types drawn as an edge to it
+    static final Map<ResourceType, Set<ResourceType>> OWNER_TYPES = Map.of(
+            ResourceType.POD, Set.of(ResourceType.REPLICASET),
+            ResourceType.REPLICASET, Set.of(ResourceType.DEPLOYMENT));
+
+    private static final Set<ResourceType> DERIVED = Set.of(ResourceType.POD);
+
+    private OwnershipRules() {
+    }
+
+    static boolean drawsEdge(ResourceType owner, ResourceType child) {
+        return OWNER_TYPES.getOrDefault(child, Set.of()).contains(owner);
+    }
+
+    static boolean derived(ResourceType child) {
+        return DERIVED.contains(child);
+    }
+
+    // True if a change to a resource of this type can change derived edges of its children
+    static boolean ownsDerived(ResourceType owner) {
+        for (ResourceType child : DERIVED) {
+            if (drawsEdge(owner, child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,506 @@
+package com.raushan.k8smapper.service;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Immutable hash map stored as a 32-way hash trie. {@link #plus} and {@link #minus} return a new map that copies only
+ * the few nodes on the path to the changed key and shares the rest, so every older version stays valid and costs
+ * nothing to keep. Lookups descend at most seven levels, usually two or three, so reads cost about what a
+ * {@link java.util.HashMap} costs.
+ * <p>
+ * The {@link Map} view is read-only. Keys and values must not be null.
+ */
+final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * This map with {@code key} mapped to {@code value}; this map itself if it already holds that exact value.
+     */
+    PersistentHashMap<K, V> plus(K key, V value) {
+        int hash = hash(key);
+        if (root == null) {
+            return new PersistentHashMap<>(new BitmapNode(bit(hash, 0), new Object[]{new Leaf(hash, key, value)}), 1);
+        }
+        boolean[] added = new boolean[1];
+        Node updated = root.put(hash, key, value, 0, added);
+        return updated == root ? this : new PersistentHashMap<>(updated, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * This map without {@code key}; this map itself if the key is absent.
+     */
+    PersistentHashMap<K, V> minus(Object key) {
+        if (root == null) {
+            return this;
+        }
+        Node updated = root.remove(hash(key), 0, key);
+        if (updated == root) {
+            return this;
+        }
+        return updated == null ? empty() : new PersistentHashMap<>(updated, size - 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        Leaf leaf = root.find(hash(key), 0, key);
+        return leaf != null ? (V) leaf.value : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root != null && key != null && root.find(hash(key), 0, key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) {
+            root.forEach((BiConsumer<Object, Object>) action);
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Iterator<Entry<K, V>> iterator() {
+                return new LeafIterator<>(root, leaf -> (Entry<K, V>) (Entry<?, ?>) leaf);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    // The key and value views walk the trie directly rather than through entrySet(), which AbstractMap would do
+
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Iterator<K> iterator() {
+                return new LeafIterator<>(root, leaf -> (K) leaf.key);
+            }
+
+            @Override
+            public void forEach(Consumer<? super K> action) {
+                PersistentHashMap.this.forEach((key, value) -> action.accept(key));
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Iterator<V> iterator() {
+                return new LeafIterator<>(root, leaf -> (V) leaf.value);
+            }
+
+            @Override
+            public void forEach(Consumer<? super V> action) {
+                PersistentHashMap.this.forEach((key, value) -> action.accept(value));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    // Spreads the high bits down, since the first trie levels index by the low ones
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    // Smallest node holding two leaves that share the slot one level up
+    private static Node merge(Leaf a, Leaf b, int shift) {
+        if (a.hash == b.hash) {
+            return new CollisionNode(a.hash, new Leaf[]{a, b});
+        }
+        int bitA = bit(a.hash, shift);
+        int bitB = bit(b.hash, shift);
+        if (bitA == bitB) {
+            return new BitmapNode(bitA, new Object[]{merge(a, b, shift + BITS)});
+        }
+        return new BitmapNode(bitA | bitB, Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[]{a, b} : new Object[]{b, a});
+    }
+
+    private static final class Leaf implements Entry<Object, Object> {
+        final int hash;
+        final Object key;
+        final Object value;
+
+        Leaf(int hash, Object key, Object value) {
+            this.hash = hash;
+            this.key = Objects.requireNonNull(key);
+            this.value = Objects.requireNonNull(value);
+        }
+
+        boolean matches(int hash, Object key) {
+            return this.hash == hash && this.key.equals(key);
+        }
+
+        @Override
+        public Object getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry<?, ?> e && key.equals(e.getKey()) && value.equals(e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private abstract static sealed class Node permits BitmapNode, CollisionNode {
+
+        abstract Leaf find(int hash, int shift, Object key);
+
+        abstract Node put(int hash, Object key, Object value, int shift, boolean[] added);
+
+        // Null once the node is empty
+        abstract Node remove(int hash, int shift, Object key);
+
+        // The entry of a node holding nothing else, which the parent inlines in its place
+        abstract Leaf singleLeaf();
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+
+        // Leaves and child nodes, for iteration
+        abstract Object[] children();
+    }
+
+    /**
+     * Up to 32 slots, the present ones flagged in the bitmap and stored densely, each a {@link Leaf} or a deeper node.
+     */
+    private static final class BitmapNode extends Node {
+        final int bitmap;
+        final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        @Override
+        Leaf find(int hash, int shift, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = slots[Integer.bitCount(bitmap & (bit - 1))];
+            if (slot instanceof Leaf leaf) {
+                return leaf.matches(hash, key) ? leaf : null;
+            }
+            return ((Node) slot).find(hash, shift + BITS, key);
+        }
+
+        @Override
+        Node put(int hash, Object key, Object value, int shift, boolean[] added) {
+            int bit = bit(hash, shift);
+            int index = Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, copy, 0, index);
+                copy[index] = new Leaf(hash, key, value);
+                System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, copy);
+            }
+            Object slot = slots[index];
+            Object replacement;
+            if (slot instanceof Leaf existing) {
+                if (existing.matches(hash, key)) {
+                    if (existing.value == value) {
+                        return this;
+                    }
+                    replacement = new Leaf(hash, key, value);
+                } else {
+                    added[0] = true;
+                    replacement = merge(existing, new Leaf(hash, key, value), shift + BITS);
+                }
+            } else {
+                Node child = (Node) slot;
+                replacement = child.put(hash, key, value, shift + BITS, added);
+                if (replacement == child) {
+                    return this;
+                }
+            }
+            Object[] copy = slots.clone();
+            copy[index] = replacement;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        @Override
+        Node remove(int hash, int shift, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = Integer.bitCount(bitmap & (bit - 1));
+            Object slot = slots[index];
+            if (slot instanceof Leaf leaf) {
+                return leaf.matches(hash, key) ? without(bit, index) : this;
+            }
+            Node child = (Node) slot;
+            Node updated = child.remove(hash, shift + BITS, key);
+            if (updated == child) {
+                return this;
+            }
+            if (updated == null) {
+                return without(bit, index);
+            }
+            Leaf single = updated.singleLeaf();
+            Object[] copy = slots.clone();
+            copy[index] = single != null ? single : updated;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        private Node without(int bit, int index) {
+            if (slots.length == 1) {
+                return null;
+            }
+            Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            System.arraycopy(slots, index + 1, copy, index, slots.length - index - 1);
+            return new BitmapNode(bitmap & ~bit, copy);
+        }
+
+        @Override
+        Leaf singleLeaf() {
+            return slots.length == 1 && slots[0] instanceof Leaf leaf ? leaf : null;
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (Object slot : slots) {
+                if (slot instanceof Leaf leaf) {
+                    action.accept(leaf.key, leaf.value);
+                } else {
+                    ((Node) slot).forEach(action);
+                }
+            }
+        }
+
+        @Override
+        Object[] children() {
+            return slots;
+        }
+    }
+
+    /**
+     * Entries whose full 32-bit hashes are equal, searched linearly.
+     */
+    private static final class CollisionNode extends Node {
+        final int hash;
+        final Leaf[] leaves;
+
+        CollisionNode(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        @Override
+        Leaf find(int hash, int shift, Object key) {
+            for (Leaf leaf : leaves) {
+                if (leaf.matches(hash, key)) {
+                    return leaf;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        Node put(int hash, Object key, Object value, int shift, boolean[] added) {
+            if (hash != this.hash) {
+                // A different hash splits off above the collision: nest this node one level down next to the leaf
+                int bit = bit(this.hash, shift);
+                Node nested = new BitmapNode(bit, new Object[]{this});
+                return nested.put(hash, key, value, shift, added);
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(key)) {
+                    if (leaves[i].value == value) {
+                        return this;
+                    }
+                    Leaf[] copy = leaves.clone();
+                    copy[i] = new Leaf(hash, key, value);
+                    return new CollisionNode(hash, copy);
+                }
+            }
+            Leaf[] copy = Arrays.copyOf(leaves, leaves.length + 1);
+            copy[leaves.length] = new Leaf(hash, key, value);
+            added[0] = true;
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        Node remove(int hash, int shift, Object key) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].matches(hash, key)) {
+                    if (leaves.length == 1) {
+                        return null;
+                    }
+                    Leaf[] copy = new Leaf[leaves.length - 1];
+                    System.arraycopy(leaves, 0, copy, 0, i);
+                    System.arraycopy(leaves, i + 1, copy, i, leaves.length - i - 1);
+                    return new CollisionNode(hash, copy);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        Leaf singleLeaf() {
+            return leaves.length == 1 ? leaves[0] : null;
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (Leaf leaf : leaves) {
+                action.accept(leaf.key, leaf.value);
+            }
+        }
+
+        @Override
+        Object[] children() {
+            return leaves;
+        }
+    }
+
+    /**
+     * Depth-first walk over the leaves, mapped to entries, keys or values. Keeps the path as two fixed arrays, deep
+     * enough for any trie: seven levels of five hash bits and a collision node.
+     */
+    private static final class LeafIterator<T> implements Iterator<T> {
+        private static final int MAX_DEPTH = 8;
+
+        private final Function<Leaf, T> mapper;
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth = -1;
+        private Leaf next;
+
+        LeafIterator(Node root, Function<Leaf, T> mapper) {
+            this.mapper = mapper;
+            if (root != null) {
+                arrays[++depth] = root.children();
+            }
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Object[] children = arrays[depth];
+                int position = positions[depth];
+                if (position == children.length) {
+                    arrays[depth--] = null;
+                    continue;
+                }
+                positions[depth] = position + 1;
+                Object child = children[position];
+                if (child instanceof Leaf leaf) {
+                    next = leaf;
+                    return;
+                }
+                arrays[++depth] = ((Node) child).children();
+                positions[depth] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf current = next;
+            advance();
+            return mapper.apply(current);
+        }
+    }
+}
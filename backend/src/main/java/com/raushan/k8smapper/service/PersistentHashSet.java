@@ -0,0 +1,55 @@
+package com.raushan.k8smapper.service;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Immutable set on top of {@link PersistentHashMap}, with the same structural sharing between versions. The
+ * {@link java.util.Set} view is read-only.
+ */
+final class PersistentHashSet<E> extends AbstractSet<E> {
+
+    private static final PersistentHashSet<?> EMPTY = new PersistentHashSet<>(PersistentHashMap.empty());
+
+    private final PersistentHashMap<E, Boolean> elements;
+
+    private PersistentHashSet(PersistentHashMap<E, Boolean> elements) {
+        this.elements = elements;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> PersistentHashSet<E> empty() {
+        return (PersistentHashSet<E>) EMPTY;
+    }
+
+    PersistentHashSet<E> plus(E element) {
+        PersistentHashMap<E, Boolean> updated = elements.plus(element, Boolean.TRUE);
+        return updated == elements ? this : new PersistentHashSet<>(updated);
+    }
+
+    PersistentHashSet<E> minus(Object element) {
+        PersistentHashMap<E, Boolean> updated = elements.minus(element);
+        return updated == elements ? this : new PersistentHashSet<>(updated);
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return elements.containsKey(element);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return elements.keySet().iterator();
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        elements.forEach((element, present) -> action.accept(element));
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+}
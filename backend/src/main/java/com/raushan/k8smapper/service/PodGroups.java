@@ -0,0 +1,366 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.model.NamespaceFilter;
+import com.raushan.k8smapper.model.NamespaceGraph;
+import com.raushan.k8smapper.model.PatchOp;
+import com.raushan.k8smapper.model.PodGroupNode;
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.model.TopologyEdge;
+import com.raushan.k8smapper.model.TopologyNode;
+import com.raushan.k8smapper.model.projection.OwnerRef;
+import com.raushan.k8smapper.model.projection.PodInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Aggregated view of the graph: pods sharing their first owner (a ReplicaSet, StatefulSet, Job, ...) collapse into a
+ * {@link PodGroupNode} once there are at least {@code threshold} of them, and every edge to one of those pods is
+ * redirected to the group, counted once however many pods it stands for.
+ * <p>
+ * Membership and the phase and node counts are updated as pods change. {@link #drain} then derives the aggregated
+ * patch of a revision from the engine's raw changes, re-evaluating only the pods and edges they touch, plus every
+ * member of a group that crossed the threshold. The view as of the last drained revision is kept (which pods are
+ * folded into which group, the group nodes, and how many raw edges each redirected edge stands for), so the diff never
+ * needs the whole graph. Guarded by the {@link TopologyGraphEngine} lock, like the maps it is given.
+ */
+final class PodGroups {
+
+    private static final String UNKNOWN_PHASE = "Unknown";
+
+    private final int threshold;
+    private final Map<String, TopologyNode> nodesById;
+    private final Map<String, Set<TopologyEdge>> outEdges;
+    private final Map<String, Set<TopologyEdge>> inEdges;
+
+    // Current membership, whether collapsed or not
+    private final Map<String, Group> groups = new HashMap<>();
+    private final Map<String, String> groupOf = new HashMap<>();
+
+    // The view as of the last drained revision: pod node id -> group it is folded into, the group nodes, and the raw
+    // edges behind each redirected edge
+    private final Map<String, String> folded = new HashMap<>();
+    private final Map<String, Set<String>> foldedMembers = new HashMap<>();
+    private final Map<String, PodGroupNode> published = new HashMap<>();
+    private final Map<TopologyEdge, Integer> redirected = new HashMap<>();
+
+    private static final class Group {
+        private final String namespace;
+        private final String owner;
+        private final Map<String, PodInfo> members = new HashMap<>();
+        private final Map<String, Integer> phases = new TreeMap<>();
+        private final Map<String, Integer> nodes = new TreeMap<>();
+
+        private Group(String namespace, String owner) {
+            this.namespace = namespace;
+            this.owner = owner;
+        }
+    }
+
+    PodGroups(int threshold, Map<String, TopologyNode> nodesById, Map<String, Set<TopologyEdge>> outEdges,
+              Map<String, Set<TopologyEdge>> inEdges) {
+        this.threshold = threshold;
+        this.nodesById = nodesById;
+        this.outEdges = outEdges;
+        this.inEdges = inEdges;
+    }
+
+    boolean enabled() {
+        return threshold > 0;
+    }
+
+    void update(String namespace, PodInfo previous, PodInfo current) {
+        if (previous != null) {
+            String id = ResourceType.POD.nodeId(previous.uid());
+            String groupId = groupOf.remove(id);
+            Group group = groupId != null ? groups.get(groupId) : null;
+            if (group != null) {
+                group.members.remove(id);
+                count(group, previous, -1);
+                if (group.members.isEmpty()) {
+                    groups.remove(groupId);
+                }
+            }
+        }
+        if (current != null && !current.ownerRefs().isEmpty()) {
+            OwnerRef ref = current.ownerRefs().get(0);
+            String id = ResourceType.POD.nodeId(current.uid());
+            String groupId = ResourceType.POD_GROUP.nodeId(ref.uid());
+            Group group = groups.computeIfAbsent(groupId, k -> new Group(namespace, ownerNodeId(ref)));
+            group.members.put(id, current);
+            count(group, current, 1);
+            groupOf.put(id, groupId);
+        }
+    }
+
+    private static void count(Group group, PodInfo pod, int delta) {
+        add(group.phases, pod.phase() != null ? pod.phase() : UNKNOWN_PHASE, delta);
+        if (pod.nodeName() != null) {
+            add(group.nodes, pod.nodeName(), delta);
+        }
+    }
+
+    private static void add(Map<String, Integer> counts, String key, int delta) {
+        counts.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    private static String ownerNodeId(OwnerRef ref) {
+        ResourceType type = ResourceType.fromKind(ref.kind());
+        return type != null ? type.nodeId(ref.uid()) : ref.kind().toLowerCase() + ":" + ref.uid();
+    }
+
+    /**
+     * Ops taking the aggregated view from the last drained revision to the current one, given the engine's raw ops and
+     * changes for it. Called before the engine forgets those changes.
+     */
+    List<PatchOp> drain(List<PatchOp> rawOps, Map<String, TopologyNode> nodeBaseline,
+                        Map<TopologyEdge, String> edgesAdded, Map<TopologyEdge, String> edgesRemoved) {
+        // Pods whose node or folding may have changed, and the groups they leave or join
+        Set<String> pods = new LinkedHashSet<>();
+        Set<String> dirty = new LinkedHashSet<>();
+        for (String id : nodeBaseline.keySet()) {
+            if (isPod(id)) {
+                pods.add(id);
+                addIfPresent(dirty, folded.get(id));
+                addIfPresent(dirty, groupOf.get(id));
+            }
+        }
+        for (String groupId : dirty) {
+            Group group = groups.get(groupId);
+            if (published.containsKey(groupId) != (group != null && collapsed(group))) {
+                // Crossed the threshold: every member folds or unfolds
+                pods.addAll(foldedMembers.getOrDefault(groupId, Set.of()));
+                if (group != null) {
+                    pods.addAll(group.members.keySet());
+                }
+            }
+        }
+
+        List<PatchOp> nodeOps = new ArrayList<>();
+        List<PatchOp> removedEdges = new ArrayList<>();
+        List<PatchOp> addedEdges = new ArrayList<>();
+        for (PatchOp op : rawOps) {
+            switch (op.op()) {
+                case ADD_NODE, UPDATE_NODE -> {
+                    if (!isPod(op.node().getId())) nodeOps.add(op);
+                }
+                case REMOVE_NODE -> {
+                    if (!isPod(op.id())) nodeOps.add(op);
+                }
+                case REMOVE_EDGE -> {
+                    if (!touchesPod(op.edge())) removedEdges.add(op);
+                }
+                case ADD_EDGE -> {
+                    if (!touchesPod(op.edge())) addedEdges.add(op);
+                }
+            }
+        }
+
+        // Pod nodes, and the edges of every pod whose folding changed
+        Set<TopologyEdge> edges = new LinkedHashSet<>(edgesRemoved.keySet());
+        edges.addAll(edgesAdded.keySet());
+        Map<String, String> foldedNow = new HashMap<>();
+        for (String id : pods) {
+            TopologyNode before = nodeBaseline.containsKey(id) ? nodeBaseline.get(id) : nodesById.get(id);
+            TopologyNode after = nodesById.get(id);
+            String foldedBefore = folded.get(id);
+            String foldedAfter = after != null ? foldedInto(id) : null;
+            foldedNow.put(id, foldedAfter);
+            boolean visibleBefore = before != null && foldedBefore == null;
+            boolean visibleAfter = after != null && foldedAfter == null;
+            if (visibleBefore && !visibleAfter) {
+                nodeOps.add(PatchOp.removeNode(before.getNamespace(), id));
+            } else if (!visibleBefore && visibleAfter) {
+                nodeOps.add(PatchOp.addNode(after));
+            } else if (visibleBefore && !before.equals(after)) {
+                nodeOps.add(PatchOp.updateNode(after));
+            }
+            if (!Objects.equals(foldedBefore, foldedAfter)) {
+                edges.addAll(outEdges.getOrDefault(id, Set.of()));
+                edges.addAll(inEdges.getOrDefault(id, Set.of()));
+                for (TopologyEdge edge : edgesRemoved.keySet()) {
+                    if (edge.getSource().equals(id) || edge.getTarget().equals(id)) {
+                        edges.add(edge);
+                    }
+                }
+            }
+        }
+
+        // Each raw edge touching a pod is either shown as is or counted towards its redirected edge, before and after
+        Map<TopologyEdge, Integer> redirectedBefore = new LinkedHashMap<>();
+        Map<TopologyEdge, String> redirectedNamespace = new HashMap<>();
+        for (TopologyEdge edge : edges) {
+            if (!touchesPod(edge)) {
+                continue;
+            }
+            boolean existsAfter = outEdges.getOrDefault(edge.getSource(), Set.of()).contains(edge);
+            boolean existedBefore = edgesRemoved.containsKey(edge) || (existsAfter && !edgesAdded.containsKey(edge));
+            String pod = isPod(edge.getSource()) ? edge.getSource() : edge.getTarget();
+            String groupBefore = folded.get(pod);
+            String groupAfter = foldedNow.containsKey(pod) ? foldedNow.get(pod) : folded.get(pod);
+            boolean shownBefore = existedBefore && groupBefore == null;
+            boolean shownAfter = existsAfter && groupAfter == null;
+            String namespace = namespaceOf(edge, pod, edgesAdded, edgesRemoved, nodeBaseline);
+            if (shownBefore && !shownAfter) {
+                removedEdges.add(PatchOp.removeEdge(namespace, edge));
+            } else if (!shownBefore && shownAfter) {
+                addedEdges.add(PatchOp.addEdge(namespace, edge));
+            }
+            if (existedBefore && groupBefore != null) {
+                TopologyEdge target = redirect(edge, pod, groupBefore);
+                redirectedBefore.putIfAbsent(target, redirected.getOrDefault(target, 0));
+                redirected.merge(target, -1, (a, b) -> a + b == 0 ? null : a + b);
+            }
+            if (existsAfter && groupAfter != null) {
+                TopologyEdge target = redirect(edge, pod, groupAfter);
+                redirectedBefore.putIfAbsent(target, redirected.getOrDefault(target, 0));
+                redirected.merge(target, 1, Integer::sum);
+                redirectedNamespace.put(target, namespace);
+            }
+        }
+        redirectedBefore.forEach((edge, countBefore) -> {
+            boolean after = redirected.containsKey(edge);
+            if (countBefore > 0 && !after) {
+                String groupId = isGroup(edge.getSource()) ? edge.getSource() : edge.getTarget();
+                removedEdges.add(PatchOp.removeEdge(published.get(groupId).getNamespace(), edge));
+            } else if (countBefore == 0 && after) {
+                addedEdges.add(PatchOp.addEdge(redirectedNamespace.get(edge), edge));
+            }
+        });
+
+        // Group nodes, then remember the view as of this revision
+        for (String groupId : dirty) {
+            Group group = groups.get(groupId);
+            PodGroupNode before = published.get(groupId);
+            PodGroupNode after = group != null && collapsed(group) ? node(groupId, group) : null;
+            if (before == null && after != null) {
+                nodeOps.add(PatchOp.addNode(after));
+                published.put(groupId, after);
+            } else if (before != null && after == null) {
+                nodeOps.add(PatchOp.removeNode(before.getNamespace(), groupId));
+                published.remove(groupId);
+            } else if (before != null && !before.equals(after)) {
+                nodeOps.add(PatchOp.updateNode(after));
+                published.put(groupId, after);
+            }
+        }
+        foldedNow.forEach((id, groupId) -> {
+            String previous = groupId != null ? folded.put(id, groupId) : folded.remove(id);
+            if (Objects.equals(previous, groupId)) {
+                return;
+            }
+            if (previous != null) {
+                Set<String> members = foldedMembers.get(previous);
+                members.remove(id);
+                if (members.isEmpty()) {
+                    foldedMembers.remove(previous);
+                }
+            }
+            if (groupId != null) {
+                foldedMembers.computeIfAbsent(groupId, k -> new LinkedHashSet<>()).add(id);
+            }
+        });
+
+        List<PatchOp> ops = new ArrayList<>(nodeOps.size() + removedEdges.size() + addedEdges.size());
+        ops.addAll(nodeOps);
+        ops.addAll(removedEdges);
+        ops.addAll(addedEdges);
+        return ops;
+    }
+
+    /**
+     * Turns a snapshot of the last drained revision into the aggregated view of it.
+     */
+    void aggregate(Map<String, NamespaceGraph> nsGraphs, NamespaceFilter filter) {
+        nsGraphs.values().forEach(graph -> {
+            graph.getNodes().removeIf(node -> folded.containsKey(node.getId()));
+            graph.getEdges().removeIf(edge -> folded.containsKey(edge.getSource())
+                    || folded.containsKey(edge.getTarget()));
+        });
+        published.forEach((groupId, node) -> {
+            if (filter.includes(node.getNamespace())) {
+                nsGraphs.computeIfAbsent(node.getNamespace(), k -> new NamespaceGraph()).getNodes().add(node);
+            }
+        });
+        redirected.keySet().forEach(edge -> {
+            String groupId = isGroup(edge.getSource()) ? edge.getSource() : edge.getTarget();
+            String namespace = published.get(groupId).getNamespace();
+            if (filter.includes(namespace)) {
+                nsGraphs.computeIfAbsent(namespace, k -> new NamespaceGraph()).getEdges().add(edge);
+            }
+        });
+    }
+
+    /**
+     * Pod node ids folded into the group as of the last drained revision; empty unless the group was collapsed then.
+     */
+    Set<String> foldedMembers(String groupId) {
+        return Collections.unmodifiableSet(foldedMembers.getOrDefault(groupId, Set.of()));
+    }
+
+    private boolean collapsed(Group group) {
+        return threshold > 0 && group.members.size() >= threshold;
+    }
+
+    // Group the pod is folded into now, or null while it is shown on its own
+    private String foldedInto(String podId) {
+        String groupId = groupOf.get(podId);
+        return groupId != null && collapsed(groups.get(groupId)) ? groupId : null;
+    }
+
+    private PodGroupNode node(String groupId, Group group) {
+        TopologyNode owner = nodesById.get(group.owner);
+        String name = owner != null ? owner.getName() : baseName(group.members.values().iterator().next().name());
+        return new PodGroupNode(groupId, name, group.namespace, group.owner, group.members.size(),
+                Map.copyOf(group.phases), Map.copyOf(group.nodes));
+    }
+
+    // "web-7d4b9c-x2x7q" -> "web-7d4b9c", "db-0" -> "db": a pod's name without the suffix its controller added
+    private static String baseName(String podName) {
+        int dash = podName.lastIndexOf('-');
+        return dash > 0 ? podName.substring(0, dash) : podName;
+    }
+
+    private static TopologyEdge redirect(TopologyEdge edge, String pod, String groupId) {
+        return edge.getSource().equals(pod)
+                ? new TopologyEdge(groupId, edge.getTarget())
+                : new TopologyEdge(edge.getSource(), groupId);
+    }
+
+    private String namespaceOf(TopologyEdge edge, String pod, Map<TopologyEdge, String> edgesAdded,
+                               Map<TopologyEdge, String> edgesRemoved, Map<String, TopologyNode> nodeBaseline) {
+        String namespace = edgesAdded.containsKey(edge) ? edgesAdded.get(edge) : edgesRemoved.get(edge);
+        if (namespace != null) {
+            return namespace;
+        }
+        TopologyNode node = nodesById.get(pod);
+        return node != null ? node.getNamespace() : nodeBaseline.get(pod).getNamespace();
+    }
+
+    private static boolean isPod(String id) {
+        return id.startsWith("pod:");
+    }
+
+    private static boolean isGroup(String id) {
+        return id.startsWith("podgroup:");
+    }
+
+    // Pods are only ever linked to other kinds, so an edge has at most one pod endpoint
+    private static boolean touchesPod(TopologyEdge edge) {
+        return isPod(edge.getSource()) || isPod(edge.getTarget());
+    }
+
+    private static void addIfPresent(Set<String> set, String value) {
+        if (value != null) {
+            set.add(value);
+        }
+    }
+}
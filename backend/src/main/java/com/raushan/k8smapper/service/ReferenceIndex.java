@@ -0,0 +1,100 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.model.projection.IngressInfo;
+import com.raushan.k8smapper.model.projection.PodInfo;
+import com.raushan.k8smapper.model.projection.ProjectedResource;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reverse index of the by-name references resources make within their namespace: the ConfigMaps, Secrets and claims a
+ * pod mounts or loads through envFrom, and the Services an Ingress routes to. Answers "who references ConfigMap x in
+ * namespace y" with one lookup, whether or not x exists. Immutable and part of a {@link StoreSnapshot}.
+ */
+public final class ReferenceIndex {
+
+    static final ReferenceIndex EMPTY = new ReferenceIndex(PersistentHashMap.empty());
+
+    /**
+     * A resource named from another one in the same namespace.
+     */
+    public record Target(ResourceType type, String namespace, String name) {
+    }
+
+    private static final List<ResourceType> POD_TARGETS =
+            List.of(ResourceType.CONFIGMAP, ResourceType.SECRETS, ResourceType.PVC);
+    private static final List<ResourceType> INGRESS_TARGETS = List.of(ResourceType.SERVICE);
+
+    private final PersistentHashMap<Target, PersistentHashSet<String>> referrers;
+
+    private ReferenceIndex(PersistentHashMap<Target, PersistentHashSet<String>> referrers) {
+        this.referrers = referrers;
+    }
+
+    ReferenceIndex update(ResourceType type, String namespace, ProjectedResource previous,
+                          ProjectedResource current) {
+        boolean sameUid = previous != null && current != null && previous.uid().equals(current.uid());
+        PersistentHashMap<Target, PersistentHashSet<String>> updated = referrers;
+        for (ResourceType targetType : targetTypes(type)) {
+            Set<String> before = previous != null ? references(targetType, previous) : Set.of();
+            Set<String> after = current != null ? references(targetType, current) : Set.of();
+            // Most updates keep the references
+            if (sameUid && before.equals(after)) {
+                continue;
+            }
+            for (String name : before) {
+                if (!sameUid || !after.contains(name)) {
+                    updated = remove(updated, new Target(targetType, namespace, name), previous.uid());
+                }
+            }
+            for (String name : after) {
+                if (!sameUid || !before.contains(name)) {
+                    Target target = new Target(targetType, namespace, name);
+                    updated = updated.plus(target,
+                            updated.getOrDefault(target, PersistentHashSet.empty()).plus(current.uid()));
+                }
+            }
+        }
+        return updated == referrers ? this : new ReferenceIndex(updated);
+    }
+
+    /**
+     * Uids of the resources naming this one, which may or may not be stored.
+     */
+    public Set<String> referrers(ResourceType type, String namespace, String name) {
+        Set<String> uids = referrers.get(new Target(type, namespace, name));
+        return uids != null ? uids : Set.of();
+    }
+
+    // Types a resource of the type names
+    private static List<ResourceType> targetTypes(ResourceType type) {
+        return switch (type) {
+            case POD -> POD_TARGETS;
+            case INGRESS -> INGRESS_TARGETS;
+            default -> List.of();
+        };
+    }
+
+    // Names of the given type referenced by the resource
+    private static Set<String> references(ResourceType targetType, ProjectedResource resource) {
+        return switch (targetType) {
+            case CONFIGMAP -> ((PodInfo) resource).configMapRefs();
+            case SECRETS -> ((PodInfo) resource).secretRefs();
+            case PVC -> ((PodInfo) resource).claimRefs();
+            case SERVICE -> ((IngressInfo) resource).backends();
+            default -> Set.of();
+        };
+    }
+
+    private static PersistentHashMap<Target, PersistentHashSet<String>> remove(
+            PersistentHashMap<Target, PersistentHashSet<String>> referrers, Target target, String uid) {
+        PersistentHashSet<String> uids = referrers.get(target);
+        if (uids == null) {
+            return referrers;
+        }
+        uids = uids.minus(uid);
+        return uids.isEmpty() ? referrers.minus(target) : referrers.plus(target, uids);
+    }
+}
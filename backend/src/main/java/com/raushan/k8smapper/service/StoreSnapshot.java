@@ -0,0 +1,267 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.model.projection.IngressInfo;
+import com.raushan.k8smapper.model.projection.ObjectInfo;
+import com.raushan.k8smapper.model.projection.PodInfo;
+import com.raushan.k8smapper.model.projection.ProjectedResource;
+import com.raushan.k8smapper.model.projection.PvInfo;
+import com.raushan.k8smapper.model.projection.PvcInfo;
+import com.raushan.k8smapper.model.projection.ServiceInfo;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, point-in-time state of {@link K8sTopologyStore}: every stored resource by type, namespace and name,
+ * together with the indexes derived from them, at one store revision.
+ * <p>
+ * All maps are persistent: the store derives the next snapshot from the current one on every change, copying only
+ * the short trie path to the changed entry and sharing everything else. Readers holding a snapshot therefore see a
+ * graph-consistent view (no pod without the ReplicaSet it was indexed under, no index entry for a removed pod) for as
+ * long as they like, without blocking writers. The returned maps are read-only.
+ */
+public final class StoreSnapshot {
+
+    static final StoreSnapshot EMPTY = new StoreSnapshot(0, emptyResources(), OwnerIndex.EMPTY, LabelIndex.EMPTY,
+            VolumeIndex.EMPTY, ReferenceIndex.EMPTY);
+
+    private final long revision;
+    // Never modified once constructed; copied (nine references) per change
+    private final Map<ResourceType, PersistentHashMap<String, PersistentHashMap<String, ProjectedResource>>> resources;
+    private final OwnerIndex ownerIndex;
+    private final LabelIndex podLabelIndex;
+    private final VolumeIndex volumeIndex;
+    private final ReferenceIndex referenceIndex;
+
+    private StoreSnapshot(long revision,
+                          Map<ResourceType, PersistentHashMap<String, PersistentHashMap<String, ProjectedResource>>> resources,
+                          OwnerIndex ownerIndex, LabelIndex podLabelIndex, VolumeIndex volumeIndex,
+                          ReferenceIndex referenceIndex) {
+        this.revision = revision;
+        this.resources = resources;
+        this.ownerIndex = ownerIndex;
+        this.podLabelIndex = podLabelIndex;
+        this.volumeIndex = volumeIndex;
+        this.referenceIndex = referenceIndex;
+    }
+
+    private static Map<ResourceType, PersistentHashMap<String, PersistentHashMap<String, ProjectedResource>>>
+    emptyResources() {
+        Map<ResourceType, PersistentHashMap<String, PersistentHashMap<String, ProjectedResource>>> resources =
+                new EnumMap<>(ResourceType.class);
+        for (ResourceType type : ResourceType.values()) {
+            resources.put(type, PersistentHashMap.empty());
+        }
+        return resources;
+    }
+
+    /**
+     * The snapshot after storing {@code current} under the name, or removing the name if {@code current} is null.
+     * {@code previous} is what this snapshot holds under the name, as {@link #get} returns it, which the caller
+     * already looked up. Returns this snapshot if there was nothing to remove. For a PersistentVolume the namespace is
+     * ignored.
+     */
+    StoreSnapshot with(ResourceType type, String namespace, String name, ProjectedResource previous,
+                       ProjectedResource current) {
+        if (previous == null && current == null) {
+            return this;
+        }
+        String previousNamespace = filedUnder(type, namespace, previous);
+        String currentNamespace = filedUnder(type, namespace, current);
+
+        PersistentHashMap<String, PersistentHashMap<String, ProjectedResource>> byNamespace = resources.get(type);
+        if (previousNamespace != null && !previousNamespace.equals(currentNamespace)) {
+            byNamespace = file(byNamespace, previousNamespace, name, null);
+        }
+        if (currentNamespace != null) {
+            byNamespace = file(byNamespace, currentNamespace, name, current);
+        }
+        Map<ResourceType, PersistentHashMap<String, PersistentHashMap<String, ProjectedResource>>> next =
+                new EnumMap<>(resources);
+        next.put(type, byNamespace);
+
+        // The owner index only covers resources filed under a namespace, i.e. not unbound PersistentVolumes
+        ProjectedResource filedPrevious = previousNamespace != null ? previous : null;
+        ProjectedResource filedCurrent = currentNamespace != null ? current : null;
+        LabelIndex labels = type == ResourceType.POD
+                ? podLabelIndex.update(namespace, (PodInfo) previous, (PodInfo) current)
+                : podLabelIndex;
+        VolumeIndex volumes = switch (type) {
+            case PV -> volumeIndex.updateVolume(name, (PvInfo) current);
+            case PVC -> volumeIndex.updateClaim((PvcInfo) previous, (PvcInfo) current);
+            default -> volumeIndex;
+        };
+        return new StoreSnapshot(revision + 1, next,
+                ownerIndex.update(type, currentNamespace, filedPrevious, filedCurrent), labels, volumes,
+                referenceIndex.update(type, namespace, previous, current));
+    }
+
+    /**
+     * Namespace whose graph holds the resource: its own, or for a PersistentVolume the namespace of the claim bound
+     * to it. Null for no resource and for an unbound PersistentVolume.
+     */
+    static String filedUnder(ResourceType type, String namespace, ProjectedResource resource) {
+        if (resource == null) {
+            return null;
+        }
+        return type == ResourceType.PV ? ((PvInfo) resource).claimNamespace() : namespace;
+    }
+
+    private static PersistentHashMap<String, PersistentHashMap<String, ProjectedResource>> file(
+            PersistentHashMap<String, PersistentHashMap<String, ProjectedResource>> byNamespace, String namespace,
+            String name, ProjectedResource resource) {
+        PersistentHashMap<String, ProjectedResource> inNamespace =
+                byNamespace.getOrDefault(namespace, PersistentHashMap.empty());
+        inNamespace = resource != null ? inNamespace.plus(name, resource) : inNamespace.minus(name);
+        return inNamespace.isEmpty() ? byNamespace.minus(namespace) : byNamespace.plus(namespace, inNamespace);
+    }
+
+    /**
+     * Number of changes applied to the store before this snapshot was taken.
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    public ProjectedResource get(ResourceType type, String namespace, String name) {
+        if (type == ResourceType.PV) {
+            return volumeIndex.volume(name);
+        }
+        PersistentHashMap<String, ProjectedResource> inNamespace = resources.get(type).get(namespace);
+        return inNamespace != null ? inNamespace.get(name) : null;
+    }
+
+    /**
+     * Resources of one type, by namespace and name. The caller picks the projection class of that type.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends ProjectedResource> Map<String, Map<String, T>> byNamespace(ResourceType type) {
+        return (Map<String, Map<String, T>>) (Map<String, ?>) resources.get(type);
+    }
+
+    public Map<String, Map<String, PodInfo>> getPodsByNamespace() {
+        return byNamespace(ResourceType.POD);
+    }
+
+    public Map<String, Map<String, ObjectInfo>> getDeploymentsByNamespace() {
+        return byNamespace(ResourceType.DEPLOYMENT);
+    }
+
+    public Map<String, Map<String, ObjectInfo>> getReplicaSetsByNamespace() {
+        return byNamespace(ResourceType.REPLICASET);
+    }
+
+    public Map<String, Map<String, ServiceInfo>> getServicesByNamespace() {
+        return byNamespace(ResourceType.SERVICE);
+    }
+
+    public Map<String, Map<String, IngressInfo>> getIngressesByNamespace() {
+        return byNamespace(ResourceType.INGRESS);
+    }
+
+    public Map<String, Map<String, ObjectInfo>> getConfigMapsByNamespace() {
+        return byNamespace(ResourceType.CONFIGMAP);
+    }
+
+    public Map<String, Map<String, ObjectInfo>> getSecretsByNamespace() {
+        return byNamespace(ResourceType.SECRETS);
+    }
+
+    public Map<String, Map<String, PvcInfo>> getPVCByNamespace() {
+        return byNamespace(ResourceType.PVC);
+    }
+
+    /**
+     * Bound PersistentVolumes, by the namespace of their claim. Every volume, bound or not, is in the
+     * {@link #getVolumeIndex() volume index}.
+     */
+    public Map<String, Map<String, PvInfo>> getPVByNamespace() {
+        return byNamespace(ResourceType.PV);
+    }
+
+    public OwnerIndex getOwnerIndex() {
+        return ownerIndex;
+    }
+
+    public LabelIndex getPodLabelIndex() {
+        return podLabelIndex;
+    }
+
+    public VolumeIndex getVolumeIndex() {
+        return volumeIndex;
+    }
+
+    public ReferenceIndex getReferenceIndex() {
+        return referenceIndex;
+    }
+
+    /**
+     * Pods in the namespace matched by a Service selector, resolved through the label index.
+     */
+    public List<PodInfo> selectPods(String namespace, Map<String, String> selector) {
+        Set<String> uids = podLabelIndex.select(namespace, selector);
+        List<PodInfo> pods = new ArrayList<>(uids.size());
+        uids.forEach(uid -> {
+            IndexedResource pod = ownerIndex.get(uid);
+            if (pod != null) {
+                pods.add((PodInfo) pod.resource());
+            }
+        });
+        return pods;
+    }
+
+    /**
+     * Stored resources in the namespace that name this one: pods for a ConfigMap, Secret or claim, Ingresses for a
+     * Service. The named resource itself does not have to be stored.
+     */
+    public List<IndexedResource> referrers(ResourceType type, String namespace, String name) {
+        List<IndexedResource> referrers = new ArrayList<>();
+        for (String uid : referenceIndex.referrers(type, namespace, name)) {
+            IndexedResource referrer = ownerIndex.get(uid);
+            if (referrer != null) {
+                referrers.add(referrer);
+            }
+        }
+        return referrers;
+    }
+
+    /**
+     * Claims in any namespace whose {@code spec.volumeName} names the volume, resolved through the volume index.
+     */
+    public List<IndexedResource> claimsForVolume(String volumeName) {
+        List<IndexedResource> claims = new ArrayList<>();
+        for (String uid : volumeIndex.claims(volumeName)) {
+            IndexedResource claim = ownerIndex.get(uid);
+            if (claim != null) {
+                claims.add(claim);
+            }
+        }
+        return claims;
+    }
+
+    /**
+     * Number of stored resources of each type, per namespace.
+     */
+    public Map<ResourceType, Map<String, Integer>> counts() {
+        Map<ResourceType, Map<String, Integer>> counts = new EnumMap<>(ResourceType.class);
+        resources.forEach((type, byNamespace) -> {
+            Map<String, Integer> sizes = new HashMap<>();
+            byNamespace.forEach((namespace, byName) -> sizes.put(namespace, byName.size()));
+            counts.put(type, sizes);
+        });
+        return counts;
+    }
+
+    // All distinct namespaces that hold at least one resource
+    public Set<String> getNamespaces() {
+        Set<String> namespaces = new HashSet<>();
+        resources.values().forEach(byNamespace -> namespaces.addAll(byNamespace.keySet()));
+        return namespaces;
+    }
+}
@@ -1,322 +1,272 @@
 package com.raushan.k8smapper.service;
 
+import com.raushan.k8smapper.config.TopologyProperties;
 import com.raushan.k8smapper.model.NamespaceGraph;
 import com.raushan.k8smapper.model.NamespacedGraphResponse;
 import com.raushan.k8smapper.model.ResourceType;
 import com.raushan.k8smapper.model.TopologyEdge;
 import com.raushan.k8smapper.model.TopologyNode;
-import io.fabric8.kubernetes.api.model.ConfigMap;
-import io.fabric8.kubernetes.api.model.Container;
-import io.fabric8.kubernetes.api.model.EnvFromSource;
-import io.fabric8.kubernetes.api.model.HasMetadata;
-import io.fabric8.kubernetes.api.model.OwnerReference;
-import io.fabric8.kubernetes.api.model.PersistentVolume;
-import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
-import io.fabric8.kubernetes.api.model.Pod;
-import io.fabric8.kubernetes.api.model.Secret;
-import io.fabric8.kubernetes.api.model.Volume;
-import io.fabric8.kubernetes.api.model.apps.Deployment;
-import io.fabric8.kubernetes.api.model.apps.ReplicaSet;
-import io.fabric8.kubernetes.api.model.networking.v1.HTTPIngressRuleValue;
-import io.fabric8.kubernetes.api.model.networking.v1.Ingress;
+import com.raushan.k8smapper.model.projection.IngressInfo;
+import com.raushan.k8smapper.model.projection.ObjectInfo;
+import com.raushan.k8smapper.model.projection.PodInfo;
+import com.raushan.k8smapper.model.projection.ProjectedResource;
+import com.raushan.k8smapper.model.projection.PvInfo;
+import com.raushan.k8smapper.model.projection.PvcInfo;
+import com.raushan.k8smapper.model.projection.ServiceInfo;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
-import java.util.function.Function;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 @Service
 public class TopologyBuilderService {
-    public NamespacedGraphResponse buildFromStore(K8sTopologyStore store) {
-        Map<String, NamespaceGraph> nsGraphs = new HashMap<>();
-
-        Set<String> allNamespaces = new HashSet<>();
-        allNamespaces.addAll(store.getServicesByNamespace().keySet());
-        allNamespaces.addAll(store.getPodsByNamespace().keySet());
-        allNamespaces.addAll(store.getDeploymentsByNamespace().keySet());
-        allNamespaces.addAll(store.getReplicaSetsByNamespace().keySet());
-        allNamespaces.addAll(store.getConfigMapsByNamespace().keySet());
-        allNamespaces.addAll(store.getSecretsByNamespace().keySet());
-        allNamespaces.addAll(store.getIngressesByNamespace().keySet());
-
-        for (String namespace : allNamespaces) {
-            NamespaceGraph nsGraph = new NamespaceGraph();
-
-            Map<String, TopologyNode> nodes = new HashMap<>();
-            List<TopologyEdge> edges = new ArrayList<>();
 
-            // Helper to create node ID with type prefix
-            Function<String, String> serviceId = uid -> "service:" + uid;
-            Function<String, String> podId = uid -> "pod:" + uid;
-            Function<String, String> deploymentId = uid -> "deployment:" + uid;
-            Function<String, String> rsId = uid -> "replicaset:" + uid;
-            Function<String, String> cmId = uid -> "configmap:" + uid;
-            Function<String, String> secretId = uid -> "secret:" + uid;
-            Function<String, String> ingressId = uid -> "ingress:" + uid;
-            Function<String, String> pvcId = uid -> "pvc:" + uid;
-            Function<String, String> pvId = uid -> "pv:" + uid;
+    private final TopologyProperties properties;
+    private final TopologyMetrics metrics;
+    // Created by the first build, so an instance without topology.graph.verify never starts any threads
+    private ForkJoinPool pool;
 
-            // Add all resources as nodes
-
-            // Services
-            Map<String, io.fabric8.kubernetes.api.model.Service> services = store.getServicesByNamespace().getOrDefault(namespace, Collections.emptyMap());
-            services.forEach((name, svc) -> {
-                String id = serviceId.apply(svc.getMetadata().getUid());
-                nodes.put(id, new TopologyNode(id, name, namespace, ResourceType.SERVICE));
-            });
+    public TopologyBuilderService(TopologyProperties properties, TopologyMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+    }
 
-            // Deployments
-            Map<String, Deployment> deployments = store.getDeploymentsByNamespace().getOrDefault(namespace, Collections.emptyMap());
-            deployments.forEach((name, dep) -> {
-                String id = deploymentId.apply(dep.getMetadata().getUid());
-                nodes.put(id, new TopologyNode(id, name, namespace, ResourceType.DEPLOYMENT));
-            });
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
 
-            // ReplicaSets
-            Map<String, ReplicaSet> replicaSets = store.getReplicaSetsByNamespace().getOrDefault(namespace, Collections.emptyMap());
-            replicaSets.forEach((name, rs) -> {
-                String id = rsId.apply(rs.getMetadata().getUid());
-                nodes.put(id, new TopologyNode(id, name, namespace, ResourceType.REPLICASET));
-            });
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            int parallelism = properties.getGraph().getBuildParallelism();
+            pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        }
+        return pool;
+    }
 
-            // Pods
-            Map<String, Pod> pods = store.getPodsByNamespace().getOrDefault(namespace, Collections.emptyMap());
-            pods.forEach((name, pod) -> {
-                String id = podId.apply(pod.getMetadata().getUid());
-                nodes.putIfAbsent(id, new TopologyNode(id, name, namespace, ResourceType.POD));
-            });
+    /**
+     * Builds the graph of every namespace from scratch. Namespaces are independent, so they are built as separate
+     * tasks on a work-stealing pool, largest first so that one huge namespace starts early instead of running alone
+     * at the end. Namespaces come out sorted by name and each graph in an order fixed by the snapshot, so the result
+     * is identical whatever the parallelism.
+     * <p>
+     * This full rebuild is off the serving path: clients are served by {@link TopologyGraphEngine}, and the builder
+     * only runs for the {@code topology.graph.verify} check and the benchmarks. Each namespace numbers its resources
+     * densely for the build and keeps edges as packed pairs of those numbers in a primitive array.
+     */
+    public NamespacedGraphResponse buildFromStore(K8sTopologyStore store) {
+        return build(store.snapshot());
+    }
 
-            // ConfigMaps
-            Map<String, ConfigMap> configMaps = store.getConfigMapsByNamespace().getOrDefault(namespace, Collections.emptyMap());
-            configMaps.forEach((name, cm) -> {
-                String id = cmId.apply(cm.getMetadata().getUid());
-                nodes.put(id, new TopologyNode(id, name, namespace, ResourceType.CONFIGMAP));
-            });
+    /**
+     * Same as {@link #buildFromStore}, from one point-in-time view of the store. Every namespace task reads this
+     * snapshot, so writes landing during the build cannot leave edges to removed pods or ReplicaSets without their
+     * Deployment.
+     */
+    public NamespacedGraphResponse build(StoreSnapshot store) {
+        return metrics.graphBuild().record(() -> buildAll(store));
+    }
 
-            // Secrets
-            Map<String, Secret> secrets = store.getSecretsByNamespace().getOrDefault(namespace, Collections.emptyMap());
-            secrets.forEach((name, sec) -> {
-                String id = secretId.apply(sec.getMetadata().getUid());
-                nodes.put(id, new TopologyNode(id, name, namespace, ResourceType.SECRETS));
-            });
+    private NamespacedGraphResponse buildAll(StoreSnapshot store) {
+        List<String> namespaces = new ArrayList<>(store.getNamespaces());
+        Map<String, Integer> sizes = new HashMap<>();
+        namespaces.forEach(namespace -> sizes.put(namespace, namespaceSize(store, namespace)));
+        namespaces.sort(Comparator.comparing(sizes::get, Comparator.reverseOrder()));
 
-            // Ingresses
-            Map<String, Ingress> ingresses = store.getIngressesByNamespace().getOrDefault(namespace, Collections.emptyMap());
-            ingresses.forEach((name, ing) -> {
-                String id = ingressId.apply(ing.getMetadata().getUid());
-                nodes.put(id, new TopologyNode(id, name, namespace, ResourceType.INGRESS));
-            });
+        ForkJoinPool pool = pool();
+        List<ForkJoinTask<NamespaceGraph>> tasks = new ArrayList<>(namespaces.size());
+        for (String namespace : namespaces) {
+            tasks.add(pool.submit(() -> buildNamespace(store, namespace)));
+        }
+        Map<String, NamespaceGraph> nsGraphs = new TreeMap<>();
+        for (int i = 0; i < namespaces.size(); i++) {
+            nsGraphs.put(namespaces.get(i), tasks.get(i).join());
+        }
+        return new NamespacedGraphResponse(nsGraphs);
+    }
 
-            // PersistentVolumeClaims
-            Map<String, PersistentVolumeClaim> pvcs = store.getPVCByNamespace().getOrDefault(namespace, Collections.emptyMap());
-            pvcs.forEach((name, pvc) -> {
-                String id = pvcId.apply(pvc.getMetadata().getUid());
-                nodes.put(id, new TopologyNode(id, name, namespace, ResourceType.PVC));
-            });
+    private NamespaceGraph buildNamespace(StoreSnapshot store, String namespace) {
+        // Edges as dense per-build ids; node id strings only come in when the result is assembled
+        NodeTable nodes = new NodeTable();
+        EdgeList edges = new EdgeList();
+
+        // Add all resources as nodes
+        Map<String, ServiceInfo> services = store.getServicesByNamespace().getOrDefault(namespace, Collections.emptyMap());
+        Map<String, ObjectInfo> deployments = store.getDeploymentsByNamespace().getOrDefault(namespace, Collections.emptyMap());
+        Map<String, ObjectInfo> replicaSets = store.getReplicaSetsByNamespace().getOrDefault(namespace, Collections.emptyMap());
+        Map<String, PodInfo> pods = store.getPodsByNamespace().getOrDefault(namespace, Collections.emptyMap());
+        Map<String, ObjectInfo> configMaps = store.getConfigMapsByNamespace().getOrDefault(namespace, Collections.emptyMap());
+        Map<String, ObjectInfo> secrets = store.getSecretsByNamespace().getOrDefault(namespace, Collections.emptyMap());
+        Map<String, IngressInfo> ingresses = store.getIngressesByNamespace().getOrDefault(namespace, Collections.emptyMap());
+        Map<String, PvcInfo> pvcs = store.getPVCByNamespace().getOrDefault(namespace, Collections.emptyMap());
+        Map<String, PvInfo> pvs = store.getPVByNamespace().getOrDefault(namespace, Collections.emptyMap());
+        nodes.addAll(ResourceType.SERVICE, namespace, services);
+        nodes.addAll(ResourceType.DEPLOYMENT, namespace, deployments);
+        nodes.addAll(ResourceType.REPLICASET, namespace, replicaSets);
+        nodes.addAll(ResourceType.POD, namespace, pods);
+        nodes.addAll(ResourceType.CONFIGMAP, namespace, configMaps);
+        nodes.addAll(ResourceType.SECRETS, namespace, secrets);
+        nodes.addAll(ResourceType.INGRESS, namespace, ingresses);
+        nodes.addAll(ResourceType.PVC, namespace, pvcs);
+        nodes.addAll(ResourceType.PV, namespace, pvs);
+
+        // Now add edges
+        // 1. Service -> Pod (via selector, resolved through the label index)
+        services.values().forEach(svc -> {
+            int svcNodeId = nodes.id(svc);
+            store.selectPods(namespace, svc.selector())
+                    .forEach(pod -> edges.add(svcNodeId, nodes.id(pod))); // Dashed edge
+        });
+
+        // 2-4. Ownership edges of every owned type, via the owner index: Deployment -> ReplicaSet -> Pod and the
+        // derived Deployment -> Pod
+        for (ResourceType type : OwnershipRules.OWNER_TYPES.keySet()) {
+            store.byNamespace(type).getOrDefault(namespace, Collections.emptyMap()).values()
+                    .forEach(resource -> addOwnershipEdges(store, namespace, type, resource, nodes, edges));
+        }
 
-            // PersistentVolumes
-            Map<String, PersistentVolume> pvs = store.getPVByNamespace().getOrDefault(namespace, Collections.emptyMap());
-            pvs.forEach((name, pv) -> {
-                String id = pvId.apply(pv.getMetadata().getUid());
-                nodes.put(id, new TopologyNode(id, name, namespace, ResourceType.PV));
-            });
+        pods.values().forEach(pod -> {
+            int podNodeId = nodes.id(pod);
+            // 5. Pod -> ConfigMap (volumes and envFrom)
+            pod.configMapRefs().forEach(cmName -> addEdgeIfExists(cmName, configMaps, nodes, edges, podNodeId));
+            // 6. Pod -> Secret (volumes and envFrom)
+            pod.secretRefs().forEach(secretName -> addEdgeIfExists(secretName, secrets, nodes, edges, podNodeId));
+            // 8. Pod -> PVC
+            pod.claimRefs().forEach(pvcName -> addEdgeIfExists(pvcName, pvcs, nodes, edges, podNodeId));
+        });
+
+        // 7. Ingress -> Service
+        ingresses.values().forEach(ing -> {
+            int ingNodeId = nodes.id(ing);
+            ing.backends().forEach(svcName -> addEdgeIfExists(svcName, services, nodes, edges, ingNodeId));
+        });
+
+        // 9. PVC -> PV, through the cluster-wide volume index; only volumes bound to a claim here are in this graph
+        VolumeIndex volumes = store.getVolumeIndex();
+        pvcs.values().forEach(pvc -> {
+            PvInfo pv = pvc.volumeName() != null ? volumes.volume(pvc.volumeName()) : null;
+            if (pv != null && namespace.equals(pv.claimNamespace())) {
+                edges.add(nodes.id(pvc), nodes.id(pv)); // Solid edge
+            }
+        });
 
-            // Now add edges
-            // 1. Service -> Pod (via selector)
-            services.forEach((name, svc) -> {
-                String svcNodeId = serviceId.apply(svc.getMetadata().getUid());
-                Map<String, String> selector = svc.getSpec().getSelector();
-                if (selector != null) {
-                    pods.forEach((podName, pod) -> {
-                        Map<String, String> labels = pod.getMetadata().getLabels();
-                        if (labels != null && labels.entrySet().containsAll(selector.entrySet())) {
-                            String podNodeId = podId.apply(pod.getMetadata().getUid());
-                            edges.add(new TopologyEdge(svcNodeId, podNodeId)); // Dashed edge
-                        }
-                    });
-                }
-            });
+        int edgeCount = edges.sortDistinct();
+        List<TopologyEdge> edgeList = new ArrayList<>(edgeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            edgeList.add(new TopologyEdge(nodes.node(edges.source(i)).getId(), nodes.node(edges.target(i)).getId()));
+        }
+        return new NamespaceGraph(nodes.nodes, edgeList);
+    }
 
-            // 2. Deployment -> ReplicaSet (via ownerReference)
-            replicaSets.forEach((rsName, rs) -> {
-                String rsNodeId = rsId.apply(rs.getMetadata().getUid());
-                OwnerReference owner = findOwnerReference(rs.getMetadata().getOwnerReferences(), "Deployment");
-                if (owner != null) {
-                    deployments.forEach((depName, dep) -> {
-                        if (dep.getMetadata().getUid().equals(owner.getUid())) {
-                            String depNodeId = deploymentId.apply(dep.getMetadata().getUid());
-                            edges.add(new TopologyEdge(depNodeId, rsNodeId)); // Solid edge
-                        }
-                    });
-                }
-            });
+    private static int namespaceSize(StoreSnapshot store, String namespace) {
+        return store.getPodsByNamespace().getOrDefault(namespace, Collections.emptyMap()).size()
+                + store.getReplicaSetsByNamespace().getOrDefault(namespace, Collections.emptyMap()).size()
+                + store.getServicesByNamespace().getOrDefault(namespace, Collections.emptyMap()).size();
+    }
 
-            // 3. ReplicaSet -> Pod (via ownerReference)
-            pods.forEach((podName, pod) -> {
-                String podNodeId = podId.apply(pod.getMetadata().getUid());
-                OwnerReference owner = findOwnerReference(pod.getMetadata().getOwnerReferences(), "ReplicaSet");
-                if (owner != null) {
-                    replicaSets.forEach((rsName, rs) -> {
-                        if (rs.getMetadata().getUid().equals(owner.getUid())) {
-                            String rsNodeId = rsId.apply(rs.getMetadata().getUid());
-                            edges.add(new TopologyEdge(rsNodeId, podNodeId)); // Solid edge
+    // Edges from the resource's owners, and from their owners for derived types, as allowed by OwnershipRules
+    private void addOwnershipEdges(StoreSnapshot store, String namespace, ResourceType type,
+                                   ProjectedResource resource, NodeTable nodes, EdgeList edges) {
+        int nodeId = nodes.id(resource);
+        for (IndexedResource owner : store.getOwnerIndex().owners(namespace, resource)) {
+            if (OwnershipRules.drawsEdge(owner.type(), type)) {
+                edges.add(nodes.id(owner.resource()), nodeId); // Solid edge
+                if (OwnershipRules.derived(type)) {
+                    for (IndexedResource grandOwner : store.getOwnerIndex().owners(namespace, owner.resource())) {
+                        if (OwnershipRules.drawsEdge(grandOwner.type(), owner.type())) {
+                            edges.add(nodes.id(grandOwner.resource()), nodeId); // Dashed (derived)
                         }
-                    });
-                }
-            });
-
-            // 4. Deployment -> Pod (derived path via RS)
-            deployments.forEach((depName, dep) -> {
-                String depNodeId = deploymentId.apply(dep.getMetadata().getUid());
-                pods.forEach((podName, pod) -> {
-                    OwnerReference rsOwner = findOwnerReference(pod.getMetadata().getOwnerReferences(), "ReplicaSet");
-                    if (rsOwner != null) {
-                        replicaSets.forEach((rsName, rs) -> {
-                            OwnerReference depOwner = findOwnerReference(rs.getMetadata().getOwnerReferences(), "Deployment");
-                            if (depOwner != null && depOwner.getUid().equals(dep.getMetadata().getUid())
-                                    && rs.getMetadata().getUid().equals(rsOwner.getUid())) {
-                                String podNodeId = podId.apply(pod.getMetadata().getUid());
-                                edges.add(new TopologyEdge(depNodeId, podNodeId)); // Dashed (derived)
-                            }
-                        });
                     }
-                });
-            });
-
-            // 5. Pod -> ConfigMap
-            pods.forEach((podName, pod) -> {
-                String podNodeId = podId.apply(pod.getMetadata().getUid());
-
-                if (pod.getSpec() != null) {
-                    // From volumes
-                    Optional.ofNullable(pod.getSpec().getVolumes()).ifPresent(volumes -> {
-                        for (Volume vol : volumes) {
-                            if (vol.getConfigMap() != null) {
-                                String cmName = vol.getConfigMap().getName();
-                                addEdgeIfExists(cmName, configMaps, cmId, edges, podNodeId);
-                            }
-                        }
-                    });
-
-                    // From envFrom
-                    Optional.ofNullable(pod.getSpec().getContainers()).ifPresent(containers -> {
-                        for (Container container : containers) {
-                            Optional.ofNullable(container.getEnvFrom()).ifPresent(envSources -> {
-                                for (EnvFromSource envFrom : envSources) {
-                                    if (envFrom.getConfigMapRef() != null) {
-                                        String cmName = envFrom.getConfigMapRef().getName();
-                                        addEdgeIfExists(cmName, configMaps, cmId, edges, podNodeId);
-                                    }
-                                }
-                            });
-                        }
-                    });
-                }
-            });
-
-            // 6. Pod -> Secret
-            pods.forEach((podName, pod) -> {
-                String podNodeId = podId.apply(pod.getMetadata().getUid());
-
-                if (pod.getSpec() != null) {
-                    Optional.ofNullable(pod.getSpec().getVolumes()).ifPresent(volumes -> {
-                        for (Volume vol : volumes) {
-                            if (vol.getSecret() != null) {
-                                String secretName = vol.getSecret().getSecretName();
-                                addEdgeIfExists(secretName, secrets, secretId, edges, podNodeId);
-                            }
-                        }
-                    });
-
-                    Optional.ofNullable(pod.getSpec().getContainers()).ifPresent(containers -> {
-                        for (Container container : containers) {
-                            Optional.ofNullable(container.getEnvFrom()).ifPresent(envSources -> {
-                                for (EnvFromSource envFrom : envSources) {
-                                    if (envFrom.getSecretRef() != null) {
-                                        String secretName = envFrom.getSecretRef().getName();
-                                        addEdgeIfExists(secretName, secrets, secretId, edges, podNodeId);
-                                    }
-                                }
-                            });
-                        }
-                    });
                 }
-            });
-
-            // 7. Ingress -> Service
-            ingresses.forEach((ingName, ing) -> {
-                String ingNodeId = ingressId.apply(ing.getMetadata().getUid());
-                Optional.ofNullable(ing.getSpec().getRules()).ifPresent(rules -> {
-                    rules.forEach(rule -> {
-                        Optional.ofNullable(rule.getHttp()).map(HTTPIngressRuleValue::getPaths).ifPresent(paths -> {
-                            paths.forEach(path -> {
-                                if (path.getBackend() != null && path.getBackend().getService() != null) {
-                                    String svcName = path.getBackend().getService().getName();
-                                    addEdgeIfExists(svcName, services, serviceId, edges, ingNodeId);
-                                }
-                            });
-                        });
-                    });
-                });
-            });
+            }
+        }
+    }
 
-            // 8. Pod -> PVC
-            pods.forEach((podName, pod) -> {
-                String podNodeId = podId.apply(pod.getMetadata().getUid());
-                Optional.ofNullable(pod.getSpec().getVolumes()).ifPresent(volumes -> {
-                    for (Volume vol : volumes) {
-                        if (vol.getPersistentVolumeClaim() != null) {
-                            String pvcName = vol.getPersistentVolumeClaim().getClaimName();
-                            addEdgeIfExists(pvcName, pvcs, pvcId, edges, podNodeId);
-                        }
-                    }
-                });
-            });
+    private static void addEdgeIfExists(String name, Map<String, ? extends ProjectedResource> resources,
+                                        NodeTable nodes, EdgeList edges, int fromNodeId) {
+        ProjectedResource target = resources.get(name);
+        if (target != null) {
+            edges.add(fromNodeId, nodes.id(target));
+        }
+    }
 
-            // 9. PVC -> PV
-            pvcs.forEach((pvcName, pvc) -> {
-                String pvcNodeId = pvcId.apply(pvc.getMetadata().getUid());
-                String volumeName = pvc.getSpec().getVolumeName();
-                if (volumeName != null) {
-                    PersistentVolume pv = pvs.get(volumeName);
-                    if (pv != null) {
-                        String pvNodeId = pvId.apply(pv.getMetadata().getUid());
-                        edges.add(new TopologyEdge(pvcNodeId, pvNodeId)); // Solid edge
-                    }
+    /**
+     * The nodes of one namespace build, numbered densely in the order they are added.
+     */
+    private static final class NodeTable {
+        private final Map<String, Integer> idsByUid = new HashMap<>();
+        private final List<TopologyNode> nodes = new ArrayList<>();
+
+        void addAll(ResourceType type, String namespace, Map<String, ? extends ProjectedResource> resources) {
+            for (ProjectedResource resource : resources.values()) {
+                if (idsByUid.putIfAbsent(resource.uid(), nodes.size()) == null) {
+                    nodes.add(new TopologyNode(type.nodeId(resource.uid()), resource.name(), namespace, type));
                 }
-            });
+            }
+        }
 
-            nsGraph.setNodes(new ArrayList<>(nodes.values()));
-            nsGraph.setEdges(edges);
-            nsGraphs.put(namespace, nsGraph);
+        // -1 for a resource that is not a node of this namespace
+        int id(ProjectedResource resource) {
+            Integer id = idsByUid.get(resource.uid());
+            return id != null ? id : -1;
         }
 
-        return new NamespacedGraphResponse(nsGraphs);
+        TopologyNode node(int id) {
+            return nodes.get(id);
+        }
     }
 
-    // Helper method to find owner reference by kind
-    private OwnerReference findOwnerReference(List<OwnerReference> owners, String kind) {
-        if (owners == null) return null;
-        for (OwnerReference owner : owners) {
-            if (kind.equals(owner.getKind())) {
-                return owner;
+    /**
+     * Edges as {@code source << 32 | target} pairs of node ids, in one growable primitive array.
+     */
+    private static final class EdgeList {
+        private long[] pairs = new long[64];
+        private int size;
+
+        // Ignores edges to or from a resource that is not a node of this namespace
+        void add(int source, int target) {
+            if (source < 0 || target < 0) {
+                return;
+            }
+            if (size == pairs.length) {
+                pairs = Arrays.copyOf(pairs, size * 2);
+            }
+            pairs[size++] = (long) source << 32 | target;
+        }
+
+        /**
+         * Sorts by source then target and drops duplicates, e.g. a pod referencing the same ConfigMap from a volume and
+         * from envFrom. Returns the number of distinct edges.
+         */
+        int sortDistinct() {
+            Arrays.sort(pairs, 0, size);
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (distinct == 0 || pairs[i] != pairs[distinct - 1]) {
+                    pairs[distinct++] = pairs[i];
+                }
             }
+            size = distinct;
+            return distinct;
         }
-        return null;
-    }
 
-    private <T> void addEdgeIfExists(String name, Map<String, T> resources, Function<String, String> idFn,
-                                     List<TopologyEdge> edges, String fromNodeId) {
-        T target = resources.get(name);
-        if (target != null) {
-            String toNodeId = idFn.apply(((HasMetadata) target).getMetadata().getUid());
-            edges.add(new TopologyEdge(fromNodeId, toNodeId));
+        int source(int index) {
+            return (int) (pairs[index] >>> 32);
+        }
+
+        int target(int index) {
+            return (int) pairs[index];
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,17 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.model.projection.ProjectedResource;
+
+/**
+ * Notified by {@link K8sTopologyStore} after every upsert or remove.
+ * {@code previous} is null for an add, {@code current} is null for a remove.
+ * <p>
+ * The namespace is the one whose graph holds the resource. A PersistentVolume is reported under the namespace of the
+ * claim bound to it: binding it is an add, unbinding it a remove, and re-binding it elsewhere a change reported
+ * under the new namespace.
+ */
+@FunctionalInterface
+public interface TopologyChangeListener {
+    void onChange(ResourceType type, String namespace, ProjectedResource previous, ProjectedResource current);
+}
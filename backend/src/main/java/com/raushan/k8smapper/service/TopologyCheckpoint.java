@@ -0,0 +1,162 @@
+package com.raushan.k8smapper.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.raushan.k8smapper.config.TopologyProperties;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.utils.KubernetesSerialization;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Local file holding the informer caches, so a restarted backend serves its last known graph within seconds instead
+ * of after a full re-list.
+ * <p>
+ * The file is CBOR: per resource kind, the reduced objects the informer keeps (only the fields the graph uses). The
+ * informers always re-list after a restore, so no resourceVersion is kept. It is rewritten every {@code topology.checkpoint.interval} if anything
+ * changed, and on shutdown, always through a temporary file and an atomic rename. A checkpoint written for another
+ * API server, or in another format version, is ignored.
+ */
+@Service
+public class TopologyCheckpoint {
+
+    private static final int FORMAT_VERSION = 2;
+
+    private final Logger log = Logger.getLogger(TopologyCheckpoint.class.getName());
+
+    private final TopologyProperties properties;
+    private final KubernetesSerialization serialization;
+    private final String server;
+    private final ObjectMapper cbor;
+
+    private final Map<String, Section> restored = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "topology-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * One resource kind: its informer's cached objects, as generic maps.
+     */
+    public record Section(List<Object> items) {
+    }
+
+    private record Contents(int version, String server, long savedAt, Map<String, Section> sections) {
+    }
+
+    public TopologyCheckpoint(TopologyProperties properties, KubernetesClient client, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.serialization = client.getKubernetesSerialization();
+        this.server = String.valueOf(client.getMasterUrl());
+        this.cbor = objectMapper.copyWith(new CBORFactory());
+    }
+
+    @PostConstruct
+    public void load() {
+        Path path = path();
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            Contents contents = cbor.readValue(in, Contents.class);
+            if (contents.version() != FORMAT_VERSION || !server.equals(contents.server())) {
+                log.info("Ignoring checkpoint " + path + " written for " + contents.server());
+                return;
+            }
+            restored.putAll(contents.sections());
+            long objects = contents.sections().values().stream().mapToLong(section -> section.items().size()).sum();
+            log.info("Loaded checkpoint " + path + " with " + objects + " objects, written "
+                    + Duration.ofMillis(System.currentTimeMillis() - contents.savedAt()).toSeconds() + "s ago");
+        } catch (Exception e) {
+            log.warning("Could not read checkpoint " + path + ", starting empty: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Objects of one kind from the loaded checkpoint, empty if there is none. Each kind can be restored once.
+     */
+    public <T extends HasMetadata> List<T> restore(String kind, Class<T> type) {
+        Section section = restored.remove(kind);
+        if (section == null) {
+            return List.of();
+        }
+        log.info("Restoring " + section.items().size() + " " + kind + " objects from the checkpoint");
+        return section.items().stream().map(item -> serialization.convertValue(item, type)).toList();
+    }
+
+    public Section section(Collection<? extends HasMetadata> objects) {
+        return new Section(
+                objects.stream().map(object -> (Object) serialization.convertValue(object, Map.class)).toList());
+    }
+
+    /**
+     * Checkpoints whatever {@code sections} returns every interval; a null result means nothing changed.
+     */
+    public void schedule(Supplier<Map<String, Section>> sections) {
+        if (path() == null) {
+            return;
+        }
+        long interval = properties.getCheckpoint().getInterval().toMillis();
+        executor.scheduleWithFixedDelay(() -> {
+            Map<String, Section> current = sections.get();
+            if (current != null) {
+                save(current);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void save(Map<String, Section> sections) {
+        Path path = path();
+        if (path == null) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            Path dir = path.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                cbor.writeValue(out, new Contents(FORMAT_VERSION, server, System.currentTimeMillis(), sections));
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warning("Could not write checkpoint " + path + ": " + e.getMessage());
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Path path() {
+        String path = properties.getCheckpoint().getPath();
+        return path == null || path.isBlank() ? null : Path.of(path);
+    }
+}
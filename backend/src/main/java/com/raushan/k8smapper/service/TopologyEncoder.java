@@ -0,0 +1,84 @@
+package com.raushan.k8smapper.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.raushan.k8smapper.model.CompressionStats;
+import com.raushan.k8smapper.model.WireFormat;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serializes snapshots and patches in any {@link WireFormat}, with the same Jackson configuration for all of them, and
+ * compresses them.
+ */
+@Component
+public class TopologyEncoder {
+
+    private final ObjectMapper json;
+    private final ObjectMapper cbor;
+    private final TopologyMetrics metrics;
+
+    private final LongAdder framesCompressed = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder compressionNanos = new LongAdder();
+
+    public TopologyEncoder(ObjectMapper objectMapper, TopologyMetrics metrics) {
+        this.json = objectMapper;
+        this.cbor = objectMapper.copyWith(CBORFactory.builder().enable(CBORGenerator.Feature.STRINGREF).build());
+        this.metrics = metrics;
+    }
+
+    public byte[] encode(Object value, WireFormat format) throws JsonProcessingException {
+        long startedAt = System.nanoTime();
+        byte[] body = switch (format) {
+            case JSON -> json.writeValueAsBytes(value);
+            case CBOR -> cbor.writeValueAsBytes(value);
+        };
+        metrics.encoded(format, body.length, System.nanoTime() - startedAt);
+        return body;
+    }
+
+    public <T> T decode(byte[] body, WireFormat format, Class<T> type) throws IOException {
+        return switch (format) {
+            case JSON -> json.readValue(body, type);
+            case CBOR -> cbor.readValue(body, type);
+        };
+    }
+
+    /**
+     * Gzips an encoded body. Every call is counted in {@link #compressionStats()}, so callers are expected to compress
+     * a body once and share the result.
+     */
+    public byte[] gzip(byte[] body) {
+        long startedAt = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] compressed = out.toByteArray();
+        compressionNanos.add(System.nanoTime() - startedAt);
+        framesCompressed.increment();
+        bytesIn.add(body.length);
+        bytesOut.add(compressed.length);
+        metrics.compressed(body.length, compressed.length);
+        return compressed;
+    }
+
+    public CompressionStats compressionStats() {
+        long in = bytesIn.sum();
+        long out = bytesOut.sum();
+        return new CompressionStats(framesCompressed.sum(), in, out, in == 0 ? 1.0 : (double) out / in,
+                TimeUnit.NANOSECONDS.toMillis(compressionNanos.sum()));
+    }
+}
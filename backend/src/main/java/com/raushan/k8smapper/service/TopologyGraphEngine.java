@@ -0,0 +1,535 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.model.NamespaceFilter;
+import com.raushan.k8smapper.model.NamespaceGraph;
+import com.raushan.k8smapper.model.PatchOp;
+import com.raushan.k8smapper.model.PodGroupExpansion;
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.model.TopologyEdge;
+import com.raushan.k8smapper.model.TopologyNode;
+import com.raushan.k8smapper.model.TopologyPatch;
+import com.raushan.k8smapper.model.TopologySnapshot;
+import com.raushan.k8smapper.model.projection.IngressInfo;
+import com.raushan.k8smapper.model.projection.ObjectInfo;
+import com.raushan.k8smapper.model.projection.PodInfo;
+import com.raushan.k8smapper.model.projection.ProjectedResource;
+import com.raushan.k8smapper.model.projection.PvInfo;
+import com.raushan.k8smapper.model.projection.PvcInfo;
+import com.raushan.k8smapper.model.projection.ServiceInfo;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Keeps the topology graph up to date by applying every store change as a local diff.
+ * <p>
+ * A change to one resource removes that resource's node and incident edges and recomputes only those edges from the
+ * store. The only non-local edges are derived ownership edges (Deployment -> Pod), which depend on the owner in
+ * between, so a change to that owner also recomputes the edges of its children (see {@link OwnershipRules}). The
+ * resulting graph is the same as {@link TopologyBuilderService#buildFromStore(K8sTopologyStore)} would produce.
+ * <p>
+ * The engine also tracks what changed since the last {@link #drainPatch()}, so publishers can send clients a
+ * {@link TopologyPatch} per revision instead of the whole graph. Snapshots always describe a drained revision.
+ * <p>
+ * Alongside the full graph it maintains an aggregated view in which large sets of pods are collapsed into group nodes
+ * (see {@link PodGroups}), with its own patches and snapshots at the same revisions.
+ */
+@Service
+@RequiredArgsConstructor
+public class TopologyGraphEngine implements TopologyChangeListener {
+
+    private final K8sTopologyStore store;
+    private final TopologyProperties properties;
+
+    // All fields below are guarded by "this"
+    private final Map<String, Map<String, TopologyNode>> nodesByNamespace = new HashMap<>();
+    private final Map<String, TopologyNode> nodesById = new HashMap<>();
+    private final Map<String, Set<TopologyEdge>> outEdges = new HashMap<>();
+    private final Map<String, Set<TopologyEdge>> inEdges = new HashMap<>();
+
+    // Changes since the last drained revision: node state as of that revision (null = absent), net edge changes
+    private final Map<String, TopologyNode> nodeBaseline = new LinkedHashMap<>();
+    private final Map<TopologyEdge, String> edgesAdded = new LinkedHashMap<>();
+    private final Map<TopologyEdge, String> edgesRemoved = new LinkedHashMap<>();
+    private long revision;
+    private PodGroups podGroups;
+
+    /**
+     * Patches of one drained revision: of the full graph, and of the aggregated view, null if that did not change.
+     */
+    public record Drained(TopologyPatch patch, TopologyPatch aggregated) {
+    }
+
+    @PostConstruct
+    public synchronized void init() {
+        podGroups = new PodGroups(properties.getAggregation().getPodThreshold(), nodesById, outEdges, inEdges);
+        store.addListener(this);
+        // Seed with whatever the store already holds
+        seed(ResourceType.SERVICE, store.getServicesByNamespace());
+        seed(ResourceType.DEPLOYMENT, store.getDeploymentsByNamespace());
+        seed(ResourceType.REPLICASET, store.getReplicaSetsByNamespace());
+        seed(ResourceType.POD, store.getPodsByNamespace());
+        seed(ResourceType.CONFIGMAP, store.getConfigMapsByNamespace());
+        seed(ResourceType.SECRETS, store.getSecretsByNamespace());
+        seed(ResourceType.INGRESS, store.getIngressesByNamespace());
+        seed(ResourceType.PVC, store.getPVCByNamespace());
+        seed(ResourceType.PV, store.getPVByNamespace());
+    }
+
+    private <T extends ProjectedResource> void seed(ResourceType type, Map<String, Map<String, T>> byNamespace) {
+        byNamespace.forEach((namespace, resources) ->
+                resources.values().forEach(resource -> onChange(type, namespace, null, resource)));
+    }
+
+    @Override
+    public synchronized void onChange(ResourceType type, String namespace, ProjectedResource previous,
+                                      ProjectedResource current) {
+        if (previous != null) {
+            removeNode(type.nodeId(previous.uid()));
+        }
+        if (type == ResourceType.POD) {
+            podGroups.update(namespace, (PodInfo) previous, (PodInfo) current);
+        }
+        if (current != null) {
+            String id = type.nodeId(current.uid());
+            TopologyNode node = new TopologyNode(id, current.name(), namespace, type);
+            recordBaseline(id, null);
+            nodesById.put(id, node);
+            nodesByNamespace.computeIfAbsent(namespace, k -> new HashMap<>()).put(id, node);
+            recomputeEdges(type, namespace, current);
+        }
+
+        if (OwnershipRules.ownsDerived(type)) {
+            // Derived edges of the children (Deployment -> Pod) go through this resource
+            Set<String> uids = new LinkedHashSet<>();
+            if (previous != null) uids.add(previous.uid());
+            if (current != null) uids.add(current.uid());
+            for (String uid : uids) {
+                for (IndexedResource child : store.getOwnerIndex().children(namespace, type, uid)) {
+                    if (OwnershipRules.derived(child.type())) {
+                        recomputeEdges(child.type(), namespace, child.resource());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The graph exactly as it was at the current revision, grouped by namespace. Changes that have not been drained
+     * yet are rolled back using the recorded baseline, so a snapshot followed by the next patch never misses a change.
+     */
+    public TopologySnapshot snapshot() {
+        return snapshot(NamespaceFilter.ALL);
+    }
+
+    /**
+     * Same as {@link #snapshot()}, restricted to the namespaces the filter includes. Other namespaces are skipped
+     * entirely rather than built and dropped.
+     */
+    public TopologySnapshot snapshot(NamespaceFilter filter) {
+        return snapshot(filter, false);
+    }
+
+    /**
+     * Same as {@link #snapshot(NamespaceFilter)}, of the aggregated view if {@code aggregated} is set.
+     */
+    public synchronized TopologySnapshot snapshot(NamespaceFilter filter, boolean aggregated) {
+        Map<String, NamespaceGraph> nsGraphs = new HashMap<>();
+        nodesByNamespace.forEach((namespace, nodes) -> {
+            if (filter.includes(namespace)) {
+                addCurrent(nsGraphs, namespace, nodes);
+            }
+        });
+        nodeBaseline.forEach((id, before) -> {
+            if (before != null && filter.includes(before.getNamespace())) {
+                graphFor(nsGraphs, before.getNamespace()).getNodes().add(before);
+            }
+        });
+        edgesRemoved.forEach((edge, namespace) -> {
+            if (filter.includes(namespace)) {
+                graphFor(nsGraphs, namespace).getEdges().add(edge);
+            }
+        });
+        if (aggregated) {
+            podGroups.aggregate(nsGraphs, filter);
+        }
+        return new TopologySnapshot(revision, nsGraphs);
+    }
+
+    // Nodes and edges of the namespace that were already there at the current revision
+    private void addCurrent(Map<String, NamespaceGraph> nsGraphs, String namespace, Map<String, TopologyNode> nodes) {
+        nodes.forEach((id, node) -> {
+            if (!nodeBaseline.containsKey(id)) {
+                graphFor(nsGraphs, namespace).getNodes().add(node);
+            }
+            outEdges.getOrDefault(id, Collections.emptySet()).forEach(edge -> {
+                if (!edgesAdded.containsKey(edge)) {
+                    graphFor(nsGraphs, namespace).getEdges().add(edge);
+                }
+            });
+        });
+    }
+
+    private static NamespaceGraph graphFor(Map<String, NamespaceGraph> nsGraphs, String namespace) {
+        return nsGraphs.computeIfAbsent(namespace, k -> new NamespaceGraph());
+    }
+
+    /**
+     * Same as {@link #drain()}, for callers only interested in the full graph.
+     *
+     * @return the patch, or null if neither view changed
+     */
+    public TopologyPatch drainPatch() {
+        Drained drained = drain();
+        return drained != null ? drained.patch() : null;
+    }
+
+    /**
+     * Turns everything that changed since the previous call into patches and advances the revision. The patch of the
+     * full graph may be empty when only the pod counts of a group changed.
+     *
+     * @return the patches, or null if neither view changed
+     */
+    public synchronized Drained drain() {
+        List<PatchOp> ops = new ArrayList<>();
+        nodeBaseline.forEach((id, before) -> {
+            TopologyNode after = nodesById.get(id);
+            if (before == null && after != null) {
+                ops.add(PatchOp.addNode(after));
+            } else if (before != null && after == null) {
+                ops.add(PatchOp.removeNode(before.getNamespace(), id));
+            } else if (before != null && !before.getNamespace().equals(after.getNamespace())) {
+                // Moved (a PV re-bound to a claim elsewhere): clients filtered by namespace need both sides
+                ops.add(PatchOp.removeNode(before.getNamespace(), id));
+                ops.add(PatchOp.addNode(after));
+            } else if (before != null && !before.equals(after)) {
+                ops.add(PatchOp.updateNode(after));
+            }
+        });
+        edgesRemoved.forEach((edge, namespace) -> ops.add(PatchOp.removeEdge(namespace, edge)));
+        edgesAdded.forEach((edge, namespace) -> ops.add(PatchOp.addEdge(namespace, edge)));
+        List<PatchOp> aggregatedOps = podGroups.enabled()
+                ? podGroups.drain(ops, nodeBaseline, edgesAdded, edgesRemoved) : ops;
+        nodeBaseline.clear();
+        edgesRemoved.clear();
+        edgesAdded.clear();
+
+        if (ops.isEmpty() && aggregatedOps.isEmpty()) {
+            return null;
+        }
+        long baseRevision = revision++;
+        return new Drained(new TopologyPatch(baseRevision, revision, ops),
+                aggregatedOps.isEmpty() ? null : new TopologyPatch(baseRevision, revision, aggregatedOps));
+    }
+
+    /**
+     * Pods collapsed into a group of the aggregated view, with every edge touching them, as of the current revision.
+     *
+     * @return null unless the group was collapsed at the current revision
+     */
+    public synchronized PodGroupExpansion expand(String groupId) {
+        Set<String> members = podGroups.foldedMembers(groupId);
+        if (members.isEmpty()) {
+            return null;
+        }
+        List<TopologyNode> nodes = new ArrayList<>(members.size());
+        Set<TopologyEdge> edges = new LinkedHashSet<>();
+        for (String id : members) {
+            nodes.add(nodeBaseline.containsKey(id) ? nodeBaseline.get(id) : nodesById.get(id));
+            for (Map<String, Set<TopologyEdge>> index : List.of(outEdges, inEdges)) {
+                for (TopologyEdge edge : index.getOrDefault(id, Collections.emptySet())) {
+                    if (!edgesAdded.containsKey(edge)) {
+                        edges.add(edge);
+                    }
+                }
+            }
+        }
+        edgesRemoved.keySet().forEach(edge -> {
+            if (members.contains(edge.getSource()) || members.contains(edge.getTarget())) {
+                edges.add(edge);
+            }
+        });
+        return new PodGroupExpansion(revision, groupId, nodes, new ArrayList<>(edges));
+    }
+
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Read-only view of the live graph, including changes not drained into a patch yet, for bounded queries.
+     */
+    public interface GraphView {
+
+        // Last drained revision; the view may already be ahead of it
+        long revision();
+
+        TopologyNode node(String id);
+
+        Collection<TopologyEdge> outgoing(String id);
+
+        Collection<TopologyEdge> incoming(String id);
+
+        Collection<TopologyNode> nodes(String namespace);
+
+        Set<String> namespaces();
+    }
+
+    /**
+     * Runs a query against the live graph. It holds the engine lock, so store changes wait for it; queries must be
+     * bounded and must not keep the view or its collections.
+     */
+    public synchronized <T> T read(Function<GraphView, T> query) {
+        return query.apply(view);
+    }
+
+    private final GraphView view = new GraphView() {
+        @Override
+        public long revision() {
+            return revision;
+        }
+
+        @Override
+        public TopologyNode node(String id) {
+            return nodesById.get(id);
+        }
+
+        @Override
+        public Collection<TopologyEdge> outgoing(String id) {
+            return Collections.unmodifiableCollection(outEdges.getOrDefault(id, Collections.emptySet()));
+        }
+
+        @Override
+        public Collection<TopologyEdge> incoming(String id) {
+            return Collections.unmodifiableCollection(inEdges.getOrDefault(id, Collections.emptySet()));
+        }
+
+        @Override
+        public Collection<TopologyNode> nodes(String namespace) {
+            return Collections.unmodifiableCollection(
+                    nodesByNamespace.getOrDefault(namespace, Collections.emptyMap()).values());
+        }
+
+        @Override
+        public Set<String> namespaces() {
+            return Collections.unmodifiableSet(nodesByNamespace.keySet());
+        }
+    };
+
+    /**
+     * Compares two graphs ignoring node and edge order.
+     */
+    public static boolean sameTopology(Map<String, NamespaceGraph> a, Map<String, NamespaceGraph> b) {
+        if (!a.keySet().equals(b.keySet())) {
+            return false;
+        }
+        for (Map.Entry<String, NamespaceGraph> entry : a.entrySet()) {
+            NamespaceGraph other = b.get(entry.getKey());
+            if (!new HashSet<>(entry.getValue().getNodes()).equals(new HashSet<>(other.getNodes()))
+                    || !new HashSet<>(entry.getValue().getEdges()).equals(new HashSet<>(other.getEdges()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void removeNode(String id) {
+        TopologyNode node = nodesById.remove(id);
+        if (node == null) {
+            return;
+        }
+        recordBaseline(id, node);
+        Map<String, TopologyNode> nsNodes = nodesByNamespace.get(node.getNamespace());
+        nsNodes.remove(id);
+        if (nsNodes.isEmpty()) {
+            nodesByNamespace.remove(node.getNamespace());
+        }
+        removeIncidentEdges(node.getNamespace(), id);
+    }
+
+    private void removeIncidentEdges(String namespace, String id) {
+        Set<TopologyEdge> out = outEdges.remove(id);
+        if (out != null) {
+            out.forEach(edge -> {
+                removeFrom(inEdges, edge.getTarget(), edge);
+                recordEdgeRemoved(namespace, edge);
+            });
+        }
+        Set<TopologyEdge> in = inEdges.remove(id);
+        if (in != null) {
+            in.forEach(edge -> {
+                removeFrom(outEdges, edge.getSource(), edge);
+                recordEdgeRemoved(namespace, edge);
+            });
+        }
+    }
+
+    // Remembers the node as it was at the last drained revision; only the first change since then counts
+    private void recordBaseline(String id, TopologyNode before) {
+        if (!nodeBaseline.containsKey(id)) {
+            nodeBaseline.put(id, before);
+        }
+    }
+
+    private void recordEdgeRemoved(String namespace, TopologyEdge edge) {
+        if (edgesAdded.remove(edge) == null) {
+            edgesRemoved.put(edge, namespace);
+        }
+    }
+
+    private void removeFrom(Map<String, Set<TopologyEdge>> index, String id, TopologyEdge edge) {
+        Set<TopologyEdge> edges = index.get(id);
+        if (edges != null) {
+            edges.remove(edge);
+            if (edges.isEmpty()) {
+                index.remove(id);
+            }
+        }
+    }
+
+    private void addEdge(String namespace, String source, String target) {
+        TopologyEdge edge = new TopologyEdge(source, target);
+        if (outEdges.computeIfAbsent(source, k -> new LinkedHashSet<>()).add(edge)) {
+            inEdges.computeIfAbsent(target, k -> new LinkedHashSet<>()).add(edge);
+            if (edgesRemoved.remove(edge) == null) {
+                edgesAdded.put(edge, namespace);
+            }
+        }
+    }
+
+    // Recomputes every edge that has this resource as an endpoint
+    private void recomputeEdges(ResourceType type, String namespace, ProjectedResource resource) {
+        String id = type.nodeId(resource.uid());
+        removeIncidentEdges(namespace, id);
+        ownershipEdges(type, namespace, resource, id);
+        switch (type) {
+            case POD -> podEdges(namespace, (PodInfo) resource, id);
+            case SERVICE -> serviceEdges(namespace, (ServiceInfo) resource, id);
+            case DEPLOYMENT, REPLICASET -> {
+                // Only ownership edges
+            }
+            case CONFIGMAP -> configMapEdges(namespace, resource.name(), id);
+            case SECRETS -> secretEdges(namespace, resource.name(), id);
+            case INGRESS -> ingressEdges(namespace, (IngressInfo) resource, id);
+            case PVC -> pvcEdges(namespace, (PvcInfo) resource, id);
+            case PV -> pvEdges(namespace, resource.name(), id);
+        }
+    }
+
+    /**
+     * Owner -> this and this -> children edges, plus the derived edges from this resource's owner's owner and to its
+     * children's children, all as index lookups.
+     */
+    private void ownershipEdges(ResourceType type, String namespace, ProjectedResource resource, String id) {
+        OwnerIndex owners = store.getOwnerIndex();
+        for (IndexedResource owner : owners.owners(namespace, resource)) {
+            if (!OwnershipRules.drawsEdge(owner.type(), type)) continue;
+            addEdge(namespace, owner.nodeId(), id);
+            if (OwnershipRules.derived(type)) {
+                for (IndexedResource grandOwner : owners.owners(namespace, owner.resource())) {
+                    if (OwnershipRules.drawsEdge(grandOwner.type(), owner.type())) {
+                        addEdge(namespace, grandOwner.nodeId(), id);
+                    }
+                }
+            }
+        }
+        for (IndexedResource child : owners.children(namespace, type, resource.uid())) {
+            if (!OwnershipRules.drawsEdge(type, child.type())) continue;
+            addEdge(namespace, id, child.nodeId());
+            for (IndexedResource grandChild : owners.children(namespace, child.type(), child.resource().uid())) {
+                if (OwnershipRules.derived(grandChild.type())
+                        && OwnershipRules.drawsEdge(child.type(), grandChild.type())) {
+                    addEdge(namespace, id, grandChild.nodeId());
+                }
+            }
+        }
+    }
+
+    private void podEdges(String namespace, PodInfo pod, String podNodeId) {
+        // Service -> Pod
+        services(namespace).values().forEach(svc -> {
+            if (svc.selects(pod)) {
+                addEdge(namespace, ResourceType.SERVICE.nodeId(svc.uid()), podNodeId);
+            }
+        });
+
+        // Pod -> ConfigMap / Secret / PVC
+        for (String cmName : pod.configMapRefs()) {
+            ObjectInfo cm = store.getConfigMapsByNamespace().getOrDefault(namespace, Collections.emptyMap()).get(cmName);
+            if (cm != null) addEdge(namespace, podNodeId, ResourceType.CONFIGMAP.nodeId(cm.uid()));
+        }
+        for (String secretName : pod.secretRefs()) {
+            ObjectInfo secret = store.getSecretsByNamespace().getOrDefault(namespace, Collections.emptyMap()).get(secretName);
+            if (secret != null) addEdge(namespace, podNodeId, ResourceType.SECRETS.nodeId(secret.uid()));
+        }
+        for (String claimName : pod.claimRefs()) {
+            PvcInfo pvc = store.getPVCByNamespace().getOrDefault(namespace, Collections.emptyMap()).get(claimName);
+            if (pvc != null) addEdge(namespace, podNodeId, ResourceType.PVC.nodeId(pvc.uid()));
+        }
+    }
+
+    private void serviceEdges(String namespace, ServiceInfo svc, String svcNodeId) {
+        store.selectPods(namespace, svc.selector())
+                .forEach(pod -> addEdge(namespace, svcNodeId, ResourceType.POD.nodeId(pod.uid())));
+        referrerEdges(ResourceType.SERVICE, namespace, svc.name(), svcNodeId);
+    }
+
+    private void configMapEdges(String namespace, String cmName, String cmNodeId) {
+        referrerEdges(ResourceType.CONFIGMAP, namespace, cmName, cmNodeId);
+    }
+
+    private void secretEdges(String namespace, String secretName, String secretNodeId) {
+        referrerEdges(ResourceType.SECRETS, namespace, secretName, secretNodeId);
+    }
+
+    // Edges from every pod or Ingress naming the resource, through the reference index
+    private void referrerEdges(ResourceType type, String namespace, String name, String nodeId) {
+        for (IndexedResource referrer : store.referrers(type, namespace, name)) {
+            addEdge(namespace, referrer.nodeId(), nodeId);
+        }
+    }
+
+    private void ingressEdges(String namespace, IngressInfo ing, String ingNodeId) {
+        Map<String, ServiceInfo> services = services(namespace);
+        for (String svcName : ing.backends()) {
+            ServiceInfo svc = services.get(svcName);
+            if (svc != null) {
+                addEdge(namespace, ingNodeId, ResourceType.SERVICE.nodeId(svc.uid()));
+            }
+        }
+    }
+
+    private void pvcEdges(String namespace, PvcInfo pvc, String pvcNodeId) {
+        referrerEdges(ResourceType.PVC, namespace, pvc.name(), pvcNodeId);
+        // The volume is cluster-scoped; it is only in this graph while bound to a claim here
+        PvInfo pv = pvc.volumeName() != null ? store.getVolumeIndex().volume(pvc.volumeName()) : null;
+        if (pv != null && namespace.equals(pv.claimNamespace())) {
+            addEdge(namespace, pvcNodeId, ResourceType.PV.nodeId(pv.uid()));
+        }
+    }
+
+    private void pvEdges(String namespace, String pvName, String pvNodeId) {
+        for (IndexedResource claim : store.claimsForVolume(pvName)) {
+            if (claim.namespace().equals(namespace)) {
+                addEdge(namespace, claim.nodeId(), pvNodeId);
+            }
+        }
+    }
+
+    private Map<String, ServiceInfo> services(String namespace) {
+        return store.getServicesByNamespace().getOrDefault(namespace, Collections.emptyMap());
+    }
+}
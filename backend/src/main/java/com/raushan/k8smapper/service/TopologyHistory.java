@@ -0,0 +1,263 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.model.HistoryWindow;
+import com.raushan.k8smapper.model.NamespaceFilter;
+import com.raushan.k8smapper.model.NamespaceGraph;
+import com.raushan.k8smapper.model.PatchOp;
+import com.raushan.k8smapper.model.TopologyEdge;
+import com.raushan.k8smapper.model.TopologyNode;
+import com.raushan.k8smapper.model.TopologyPatch;
+import com.raushan.k8smapper.model.TopologySnapshot;
+import com.raushan.k8smapper.model.WireFormat;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * Append-only log of every published revision, for rebuilding the graph as it was at an earlier point in time.
+ * <p>
+ * Revisions are stored CBOR-encoded in a fixed-size direct buffer used as a ring: most as the patch that produced
+ * them, every {@code topology.history.keyframe-every}-th as a full snapshot. When the buffer is full the oldest
+ * records are overwritten, together with any patches left without a keyframe to start from. Only the small record
+ * index lives on the heap. A query decodes the closest keyframe at or before the requested point and replays at most
+ * {@code keyframe-every - 1} patches on top of it.
+ */
+@Component
+public class TopologyHistory {
+
+    private final Logger log = Logger.getLogger(TopologyHistory.class.getName());
+
+    private final TopologyGraphEngine graphEngine;
+    private final TopologyEncoder encoder;
+    private final int keyframeEvery;
+
+    // All guarded by this
+    private final ByteBuffer ring;
+    private final ArrayDeque<Record> records = new ArrayDeque<>();
+    // Bytes ever written; a record's position modulo the capacity is its offset in the ring
+    private long head;
+    private int sinceKeyframe;
+
+    private record Record(long revision, long timestamp, boolean keyframe, long position, int length) {
+    }
+
+    public TopologyHistory(TopologyGraphEngine graphEngine, TopologyEncoder encoder, TopologyProperties properties) {
+        this.graphEngine = graphEngine;
+        this.encoder = encoder;
+        TopologyProperties.History config = properties.getHistory();
+        this.ring = ByteBuffer.allocateDirect((int) Math.min(config.getCapacity().toBytes(), Integer.MAX_VALUE));
+        this.keyframeEvery = Math.max(1, config.getKeyframeEvery());
+    }
+
+    /**
+     * Appends the revision a just drained patch produced. Must be called for every patch, in order, before the next
+     * one is drained.
+     */
+    public synchronized void record(TopologyPatch patch) {
+        if (ring.capacity() == 0) {
+            return;
+        }
+        boolean keyframe = records.isEmpty() || sinceKeyframe + 1 >= keyframeEvery;
+        Object value = patch;
+        if (keyframe) {
+            TopologySnapshot snapshot = graphEngine.snapshot();
+            // Only the publisher drains, so nothing can have moved the graph past this patch yet
+            if (snapshot.revision() == patch.revision()) {
+                value = snapshot;
+            } else {
+                keyframe = false;
+            }
+        }
+        byte[] body;
+        try {
+            body = encoder.encode(value, WireFormat.CBOR);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (body.length > ring.capacity()) {
+            log.warning("Revision " + patch.revision() + " needs " + body.length
+                    + " bytes, more than the whole history buffer; history restarts with the next revision");
+            clear();
+            return;
+        }
+
+        while (!records.isEmpty() && head + body.length - records.peekFirst().position() > ring.capacity()) {
+            records.pollFirst();
+        }
+        // Patches are useless without the keyframe before them
+        while (!records.isEmpty() && !records.peekFirst().keyframe()) {
+            records.pollFirst();
+        }
+        if (records.isEmpty() && !keyframe) {
+            sinceKeyframe = keyframeEvery;
+            return;
+        }
+
+        write(head, body);
+        records.addLast(new Record(patch.revision(), System.currentTimeMillis(), keyframe, head, body.length));
+        head += body.length;
+        sinceKeyframe = keyframe ? 0 : sinceKeyframe + 1;
+    }
+
+    /**
+     * The graph as it was at {@code timestamp} (epoch millis), i.e. at the last revision recorded no later than that.
+     *
+     * @return the rebuilt snapshot, or null if the time lies before the retained window
+     */
+    public TopologySnapshot at(long timestamp, NamespaceFilter filter) {
+        return rebuild(record -> record.timestamp() <= timestamp, filter);
+    }
+
+    /**
+     * The graph as it was at {@code revision}, or at the closest earlier recorded revision.
+     *
+     * @return the rebuilt snapshot, or null if the revision lies before the retained window
+     */
+    public TopologySnapshot atRevision(long revision, NamespaceFilter filter) {
+        return rebuild(record -> record.revision() <= revision, filter);
+    }
+
+    public synchronized HistoryWindow window() {
+        if (records.isEmpty()) {
+            return new HistoryWindow(-1, -1, -1, -1, 0, 0, 0, ring.capacity());
+        }
+        Record oldest = records.peekFirst();
+        Record newest = records.peekLast();
+        int keyframes = (int) records.stream().filter(Record::keyframe).count();
+        return new HistoryWindow(oldest.revision(), oldest.timestamp(), newest.revision(), newest.timestamp(),
+                keyframes, records.size() - keyframes, head - oldest.position(), ring.capacity());
+    }
+
+    private TopologySnapshot rebuild(Predicate<Record> upTo, NamespaceFilter filter) {
+        List<byte[]> bodies = copy(upTo);
+        if (bodies == null) {
+            return null;
+        }
+        try {
+            TopologySnapshot keyframe = encoder.decode(bodies.get(0), WireFormat.CBOR, TopologySnapshot.class);
+            Replay replay = new Replay(keyframe, filter);
+            for (byte[] body : bodies.subList(1, bodies.size())) {
+                replay.apply(encoder.decode(body, WireFormat.CBOR, TopologyPatch.class));
+            }
+            return replay.snapshot();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Bodies of the latest matching keyframe and the matching patches after it, copied out before a writer reuses
+    // their space; null if no keyframe matches
+    private synchronized List<byte[]> copy(Predicate<Record> upTo) {
+        List<Record> selected = new ArrayList<>();
+        Iterator<Record> newestFirst = records.descendingIterator();
+        while (newestFirst.hasNext()) {
+            Record record = newestFirst.next();
+            if (!upTo.test(record)) {
+                continue;
+            }
+            selected.add(record);
+            if (record.keyframe()) {
+                List<byte[]> bodies = new ArrayList<>(selected.size());
+                for (int i = selected.size() - 1; i >= 0; i--) {
+                    bodies.add(read(selected.get(i)));
+                }
+                return bodies;
+            }
+        }
+        return null;
+    }
+
+    private void write(long position, byte[] body) {
+        int offset = (int) (position % ring.capacity());
+        int first = Math.min(body.length, ring.capacity() - offset);
+        ring.put(offset, body, 0, first);
+        ring.put(0, body, first, body.length - first);
+    }
+
+    private byte[] read(Record record) {
+        byte[] body = new byte[record.length()];
+        int offset = (int) (record.position() % ring.capacity());
+        int first = Math.min(body.length, ring.capacity() - offset);
+        ring.get(offset, body, 0, first);
+        ring.get(0, body, first, body.length - first);
+        return body;
+    }
+
+    private void clear() {
+        records.clear();
+        sinceKeyframe = keyframeEvery;
+    }
+
+    /**
+     * Applies patches to a decoded keyframe the same way clients do, keeping only the namespaces asked for.
+     */
+    private static final class Replay {
+        private final NamespaceFilter filter;
+        private final Map<String, Map<String, TopologyNode>> nodes = new HashMap<>();
+        private final Map<String, Set<TopologyEdge>> edges = new HashMap<>();
+        private long revision;
+
+        Replay(TopologySnapshot keyframe, NamespaceFilter filter) {
+            this.filter = filter;
+            this.revision = keyframe.revision();
+            keyframe.namespaces().forEach((namespace, graph) -> {
+                if (filter.includes(namespace)) {
+                    graph.getNodes().forEach(node -> nodesOf(namespace).put(node.getId(), node));
+                    edgesOf(namespace).addAll(graph.getEdges());
+                }
+            });
+        }
+
+        void apply(TopologyPatch patch) {
+            revision = patch.revision();
+            for (PatchOp op : patch.ops()) {
+                if (!filter.includes(op.namespace())) {
+                    continue;
+                }
+                switch (op.op()) {
+                    case ADD_NODE, UPDATE_NODE -> nodesOf(op.namespace()).put(op.node().getId(), op.node());
+                    case REMOVE_NODE -> nodesOf(op.namespace()).remove(op.id());
+                    case ADD_EDGE -> edgesOf(op.namespace()).add(op.edge());
+                    case REMOVE_EDGE -> edgesOf(op.namespace()).remove(op.edge());
+                }
+            }
+        }
+
+        TopologySnapshot snapshot() {
+            Map<String, NamespaceGraph> namespaces = new HashMap<>();
+            nodes.forEach((namespace, byId) -> {
+                if (!byId.isEmpty()) {
+                    namespaces.computeIfAbsent(namespace, k -> new NamespaceGraph()).getNodes().addAll(byId.values());
+                }
+            });
+            edges.forEach((namespace, set) -> {
+                if (!set.isEmpty()) {
+                    namespaces.computeIfAbsent(namespace, k -> new NamespaceGraph()).getEdges().addAll(set);
+                }
+            });
+            return new TopologySnapshot(revision, namespaces);
+        }
+
+        private Map<String, TopologyNode> nodesOf(String namespace) {
+            return nodes.computeIfAbsent(namespace, k -> new LinkedHashMap<>());
+        }
+
+        private Set<TopologyEdge> edgesOf(String namespace) {
+            return edges.computeIfAbsent(namespace, k -> new LinkedHashSet<>());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.model.ImpactReport;
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.model.TopologyNode;
+import com.raushan.k8smapper.model.projection.PodInfo;
+import com.raushan.k8smapper.model.projection.ProjectedResource;
+import com.raushan.k8smapper.model.projection.ServiceInfo;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Blast radius of a resource: what breaks or restarts if it changes. Dependencies run against the graph's edges where
+ * those point from consumer to consumed (pod -> ConfigMap, Secret or claim, claim -> volume, Ingress -> Service), and
+ * along them where they point from owner or frontend to backend (ReplicaSet and Deployment -> pod, Service -> pod).
+ * <p>
+ * The walk is breadth-first over one {@link StoreSnapshot}. Every step is an index lookup (reference, volume and owner
+ * indexes) except from a pod to its Services: no index maps labels to the selectors matching them, so that step scans
+ * the Services of the pod's namespace. The cost therefore depends on the number of dependents and, per pod reached,
+ * on the Services in its namespace, not on the cluster size.
+ */
+@Service
+@RequiredArgsConstructor
+public class TopologyImpact {
+
+    private final K8sTopologyStore store;
+    private final TopologyProperties properties;
+
+    /**
+     * @param depth hops to follow, capped at {@code topology.impact.max-depth}; that maximum when null
+     * @return null if no such resource is stored; the namespace is ignored for a PersistentVolume
+     */
+    public ImpactReport impact(ResourceType type, String namespace, String name, Integer depth) {
+        StoreSnapshot snapshot = store.snapshot();
+        ProjectedResource resource = snapshot.get(type, namespace, name);
+        if (resource == null) {
+            return null;
+        }
+        TopologyProperties.Impact limits = properties.getImpact();
+        int maxDepth = depth != null ? Math.max(0, Math.min(depth, limits.getMaxDepth())) : limits.getMaxDepth();
+        IndexedResource root = new IndexedResource(type, StoreSnapshot.filedUnder(type, namespace, resource), resource);
+
+        List<ImpactReport.Dependent> dependents = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        seen.add(resource.uid());
+        List<IndexedResource> frontier = List.of(root);
+        boolean truncated = false;
+        for (int distance = 1; distance <= maxDepth && !frontier.isEmpty() && !truncated; distance++) {
+            List<IndexedResource> next = new ArrayList<>();
+            for (IndexedResource current : frontier) {
+                for (IndexedResource dependent : dependents(snapshot, current)) {
+                    if (!seen.add(dependent.resource().uid())) {
+                        continue;
+                    }
+                    if (dependents.size() == limits.getMaxResults()) {
+                        truncated = true;
+                        break;
+                    }
+                    dependents.add(new ImpactReport.Dependent(node(dependent), distance, current.nodeId()));
+                    next.add(dependent);
+                }
+                if (truncated) {
+                    break;
+                }
+            }
+            frontier = next;
+        }
+        // Stopped by the depth limit: truncated if the last hop has unseen dependents of its own
+        for (int i = 0; i < frontier.size() && !truncated; i++) {
+            for (IndexedResource dependent : dependents(snapshot, frontier.get(i))) {
+                if (!seen.contains(dependent.resource().uid())) {
+                    truncated = true;
+                    break;
+                }
+            }
+        }
+        return new ImpactReport(node(root), snapshot.getRevision(), maxDepth, truncated, dependents);
+    }
+
+    // Stored resources that depend on this one directly
+    private static List<IndexedResource> dependents(StoreSnapshot snapshot, IndexedResource resource) {
+        String namespace = resource.namespace();
+        return switch (resource.type()) {
+            case CONFIGMAP, SECRETS, PVC, SERVICE ->
+                    snapshot.referrers(resource.type(), namespace, resource.resource().name());
+            case PV -> snapshot.claimsForVolume(resource.resource().name());
+            case POD -> {
+                PodInfo pod = (PodInfo) resource.resource();
+                List<IndexedResource> dependents = new ArrayList<>(snapshot.getOwnerIndex().owners(namespace, pod));
+                // Per-namespace scan: the label index goes from selector to pods, not back
+                for (ServiceInfo svc : snapshot.getServicesByNamespace()
+                        .getOrDefault(namespace, Collections.emptyMap()).values()) {
+                    if (svc.selects(pod)) {
+                        dependents.add(new IndexedResource(ResourceType.SERVICE, namespace, svc));
+                    }
+                }
+                yield dependents;
+            }
+            case REPLICASET -> snapshot.getOwnerIndex().owners(namespace, resource.resource());
+            case DEPLOYMENT, INGRESS, POD_GROUP -> List.of();
+        };
+    }
+
+    private static TopologyNode node(IndexedResource resource) {
+        return new TopologyNode(resource.nodeId(), resource.resource().name(), resource.namespace(), resource.type());
+    }
+}
@@ -0,0 +1,131 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.model.WireFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters of the ingest, build and publish paths, scraped from {@code /actuator/prometheus}. All meter
+ * names are defined here; the hot paths only get pre-registered meters, so recording is a few atomic increments.
+ */
+@Component
+public class TopologyMetrics {
+
+    private final MeterRegistry registry;
+
+    private final Map<String, Counter> events = new ConcurrentHashMap<>();
+    private final MultiGauge storeResources;
+    private final Timer graphBuild;
+    private final Timer publish;
+    private final Map<WireFormat, Timer> encodeTime = new EnumMap<>(WireFormat.class);
+    private final Map<WireFormat, DistributionSummary> encodeBytes = new EnumMap<>(WireFormat.class);
+    private final Counter compressionIn;
+    private final Counter compressionOut;
+    private final Timer sessionSend;
+
+    public TopologyMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.storeResources = MultiGauge.builder("k8smapper.store.resources")
+                .description("Resources held in the topology store")
+                .register(registry);
+        this.graphBuild = Timer.builder("k8smapper.graph.build")
+                .description("Full graph builds from the store")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.publish = Timer.builder("k8smapper.publish")
+                .description("Draining a patch and handing it to every WebSocket session")
+                .publishPercentileHistogram()
+                .register(registry);
+        for (WireFormat format : WireFormat.values()) {
+            String tag = format.name().toLowerCase();
+            encodeTime.put(format, Timer.builder("k8smapper.encode")
+                    .description("Serializing snapshots and patches")
+                    .tag("format", tag)
+                    .register(registry));
+            encodeBytes.put(format, DistributionSummary.builder("k8smapper.encode.size")
+                    .description("Size of serialized snapshots and patches")
+                    .baseUnit("bytes")
+                    .tag("format", tag)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        this.compressionIn = Counter.builder("k8smapper.compression.in")
+                .description("Bytes gzipped")
+                .baseUnit("bytes")
+                .register(registry);
+        this.compressionOut = Counter.builder("k8smapper.compression.out")
+                .description("Gzipped bytes produced")
+                .baseUnit("bytes")
+                .register(registry);
+        this.sessionSend = Timer.builder("k8smapper.websocket.send")
+                .description("Sending one frame to one WebSocket session")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Counts a watch event, e.g. {@code ("Pod", "ADDED")}.
+     */
+    public void event(String kind, String action) {
+        events.computeIfAbsent(kind + " " + action, key -> Counter.builder("k8smapper.events")
+                .description("Watch events applied to the store")
+                .tag("kind", kind)
+                .tag("action", action)
+                .register(registry)).increment();
+    }
+
+    /**
+     * Replaces the per type and namespace store sizes; namespaces that are gone disappear from the gauge.
+     */
+    public void storeSizes(Map<ResourceType, Map<String, Integer>> counts) {
+        List<MultiGauge.Row<?>> rows = new ArrayList<>();
+        counts.forEach((type, byNamespace) -> byNamespace.forEach((namespace, count) ->
+                rows.add(MultiGauge.Row.of(Tags.of("type", type.name().toLowerCase(), "namespace", namespace),
+                        count))));
+        storeResources.register(rows, true);
+    }
+
+    public void sessions(Supplier<Number> count) {
+        Gauge.builder("k8smapper.websocket.sessions", count)
+                .description("Open WebSocket sessions")
+                .strongReference(true)
+                .register(registry);
+    }
+
+    public void encoded(WireFormat format, int bytes, long nanos) {
+        encodeTime.get(format).record(nanos, TimeUnit.NANOSECONDS);
+        encodeBytes.get(format).record(bytes);
+    }
+
+    public void compressed(int bytesIn, int bytesOut) {
+        compressionIn.increment(bytesIn);
+        compressionOut.increment(bytesOut);
+    }
+
+    public Timer graphBuild() {
+        return graphBuild;
+    }
+
+    public Timer publish() {
+        return publish;
+    }
+
+    public Timer sessionSend() {
+        return sessionSend;
+    }
+}
@@ -0,0 +1,122 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.model.NamespacedGraphResponse;
+import com.raushan.k8smapper.model.PublishStats;
+import com.raushan.k8smapper.websocket.TopologyWebSocketPublisher;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces watch events into graph publishes.
+ * <p>
+ * Watcher callbacks only call {@link #markDirty()}. A single scheduler thread rebuilds and publishes the graph once
+ * no event has arrived for the debounce window, or once the oldest pending event has waited for the max delay,
+ * whichever comes first. Because there is only one publishing thread, at most one rebuild runs at a time.
+ */
+@Service
+@RequiredArgsConstructor
+public class TopologyPublishScheduler {
+
+    private final Logger log = Logger.getLogger(TopologyPublishScheduler.class.getName());
+
+    private final K8sTopologyStore topologyStore;
+    private final TopologyGraphEngine graphEngine;
+    private final TopologyBuilderService topologyBuilder;
+    private final TopologyWebSocketPublisher topologyWebSocketPublisher;
+    private final TopologyProperties properties;
+    private final TopologyMetrics metrics;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "topology-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong firstPendingAt = new AtomicLong();
+    private volatile long lastEventAt;
+
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong graphsBuilt = new AtomicLong();
+
+    /**
+     * Records that the store changed. Cheap and non-blocking, safe to call from watcher threads.
+     */
+    public void markDirty() {
+        eventsReceived.incrementAndGet();
+        long now = System.nanoTime();
+        lastEventAt = now;
+        if (flushScheduled.compareAndSet(false, true)) {
+            // Starts a new batch: an event that raced with the previous flush may have left its start time behind
+            firstPendingAt.set(now);
+            executor.schedule(this::flush, debounceNanos(), TimeUnit.NANOSECONDS);
+        } else {
+            firstPendingAt.compareAndSet(0, now);
+        }
+    }
+
+    // Safety net for when no flush is scheduled: publishes whatever the engine has not drained yet, e.g. after a
+    // failed publish, even if no further event arrives. A scheduled flush publishes it anyway, so it is left alone
+    @Scheduled(fixedRate = 30000)
+    public void periodicFlush() {
+        if (!flushScheduled.get()) {
+            executor.execute(topologyWebSocketPublisher::publishChanges);
+        }
+    }
+
+    public PublishStats getStats() {
+        return new PublishStats(eventsReceived.get(), graphsBuilt.get(), flushScheduled.get());
+    }
+
+    private void flush() {
+        long now = System.nanoTime();
+        long quietRemaining = debounceNanos() - (now - lastEventAt);
+        long latencyRemaining = properties.getPublish().getMaxDelay().toNanos() - (now - firstPendingAt.get());
+        if (quietRemaining > 0 && latencyRemaining > 0) {
+            executor.schedule(this::flush, Math.min(quietRemaining, latencyRemaining), TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        // Reset before building so events arriving during the rebuild schedule a follow-up publish. An event landing
+        // between the two resets is covered by this publish; the next markDirty overwrites the start time it leaves.
+        firstPendingAt.set(0);
+        flushScheduled.set(false);
+        try {
+            metrics.publish().record(topologyWebSocketPublisher::publishChanges);
+            graphsBuilt.incrementAndGet();
+            metrics.storeSizes(topologyStore.counts());
+            if (properties.getGraph().isVerify()) {
+                verify();
+            }
+        } catch (Exception e) {
+            log.severe("Error publishing topology graph: " + e.getMessage());
+        }
+    }
+
+    // Cross-checks the incrementally maintained graph against a full rebuild
+    private void verify() {
+        NamespacedGraphResponse full = topologyBuilder.buildFromStore(topologyStore);
+        if (!TopologyGraphEngine.sameTopology(graphEngine.snapshot().namespaces(), full.namespaces())) {
+            log.warning("Incremental topology graph diverged from full rebuild");
+        }
+    }
+
+    private long debounceNanos() {
+        return properties.getPublish().getDebounce().toNanos();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
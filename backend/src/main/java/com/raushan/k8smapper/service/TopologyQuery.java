@@ -0,0 +1,283 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.model.GraphPage;
+import com.raushan.k8smapper.model.NamespaceFilter;
+import com.raushan.k8smapper.model.PathPage;
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.model.TopologyEdge;
+import com.raushan.k8smapper.model.TopologyNode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Server-side queries over the graph, so clients can fetch the part they look at instead of the whole topology:
+ * neighborhoods of a node, shortest paths (e.g. which Ingresses reach a pod) and subgraphs filtered by type and pod
+ * labels.
+ * <p>
+ * Neighborhoods and paths walk the engine's forward and reverse adjacency breadth-first from one node, so their cost
+ * depends on the nodes visited, which {@code topology.query.max-nodes} bounds, not on the cluster size. Subgraphs scan
+ * the selected namespaces, except for pods selected by labels, which come straight from the {@link LabelIndex}.
+ * Results are paged; every page is computed against the graph at request time, so pages of a changing graph may
+ * overlap or miss nodes.
+ */
+@Service
+@RequiredArgsConstructor
+public class TopologyQuery {
+
+    /**
+     * Edges a neighborhood follows: from source to target, back from target to source, or both.
+     */
+    public enum Direction {
+        OUT, IN, BOTH
+    }
+
+    private static final Comparator<TopologyNode> BY_NAMESPACE_AND_ID = Comparator
+            .comparing(TopologyNode::getNamespace, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(TopologyNode::getId);
+
+    private final TopologyGraphEngine engine;
+    private final K8sTopologyStore store;
+    private final TopologyProperties properties;
+
+    /**
+     * Nodes within {@code depth} hops of a node, nearest first, the node itself included.
+     *
+     * @param depth hops to follow, capped at {@code topology.query.max-depth}; that maximum when null
+     * @param types types of the nodes to return, all when empty; the walk passes through every type
+     * @return null if there is no such node
+     */
+    public GraphPage neighborhood(String nodeId, Integer depth, Direction direction, Set<ResourceType> types,
+                                  Integer offset, Integer limit) {
+        TopologyProperties.Query limits = properties.getQuery();
+        int maxDepth = clamp(depth, limits.getMaxDepth());
+        return engine.read(graph -> {
+            TopologyNode root = graph.node(nodeId);
+            if (root == null) {
+                return null;
+            }
+            Map<String, Integer> distances = new HashMap<>();
+            distances.put(nodeId, 0);
+            List<String> frontier = List.of(nodeId);
+            boolean truncated = false;
+            for (int distance = 1; distance <= maxDepth && !frontier.isEmpty() && !truncated; distance++) {
+                List<String> next = new ArrayList<>();
+                for (String id : frontier) {
+                    for (String neighbor : neighbors(graph, id, direction)) {
+                        if (distances.containsKey(neighbor)) {
+                            continue;
+                        }
+                        if (distances.size() == limits.getMaxNodes()) {
+                            truncated = true;
+                            break;
+                        }
+                        distances.put(neighbor, distance);
+                        next.add(neighbor);
+                    }
+                    if (truncated) {
+                        break;
+                    }
+                }
+                frontier = next;
+            }
+            List<TopologyNode> matched = new ArrayList<>();
+            for (String id : distances.keySet()) {
+                TopologyNode node = graph.node(id);
+                if (types.isEmpty() || types.contains(node.getType())) {
+                    matched.add(node);
+                }
+            }
+            matched.sort(Comparator.<TopologyNode>comparingInt(node -> distances.get(node.getId()))
+                    .thenComparing(TopologyNode::getId));
+            return page(graph, matched, truncated, offset, limit);
+        });
+    }
+
+    /**
+     * Shortest paths between one node and every node matching the other end, e.g. from each Ingress to a pod. Give
+     * {@code to} with {@code from} or {@code fromType} to walk back from the target, or {@code from} with
+     * {@code toType} to walk forward from the source.
+     *
+     * @param depth hops a path may have, capped at {@code topology.query.max-depth}; that maximum when null
+     * @return null if the node to walk from does not exist
+     */
+    public PathPage paths(String from, String to, ResourceType fromType, ResourceType toType, Integer depth,
+                          Integer offset, Integer limit) {
+        TopologyProperties.Query limits = properties.getQuery();
+        int maxDepth = clamp(depth, limits.getMaxDepth());
+        boolean backward = to != null;
+        String start = backward ? to : from;
+        Predicate<TopologyNode> matches;
+        if (backward) {
+            matches = from != null ? node -> node.getId().equals(from) : node -> node.getType() == fromType;
+        } else {
+            matches = node -> node.getType() == toType;
+        }
+        return engine.read(graph -> {
+            if (graph.node(start) == null) {
+                return null;
+            }
+            // Each visited node's previous hop on its shortest path from the start
+            Map<String, String> previous = new HashMap<>();
+            previous.put(start, null);
+            List<TopologyNode> ends = new ArrayList<>();
+            Map<String, Integer> distances = new HashMap<>();
+            List<String> frontier = List.of(start);
+            boolean truncated = false;
+            boolean found = false;
+            for (int distance = 1; distance <= maxDepth && !frontier.isEmpty() && !truncated && !found; distance++) {
+                List<String> next = new ArrayList<>();
+                for (String id : frontier) {
+                    for (String neighbor : neighbors(graph, id, backward ? Direction.IN : Direction.OUT)) {
+                        if (previous.containsKey(neighbor)) {
+                            continue;
+                        }
+                        if (previous.size() == limits.getMaxNodes()) {
+                            truncated = true;
+                            break;
+                        }
+                        previous.put(neighbor, id);
+                        next.add(neighbor);
+                        TopologyNode node = graph.node(neighbor);
+                        if (matches.test(node)) {
+                            ends.add(node);
+                            distances.put(neighbor, distance);
+                            // A single source has a single shortest path to report
+                            found = from != null && backward;
+                            if (found) {
+                                break;
+                            }
+                        }
+                    }
+                    if (truncated || found) {
+                        break;
+                    }
+                }
+                frontier = next;
+            }
+            ends.sort(Comparator.<TopologyNode>comparingInt(node -> distances.get(node.getId()))
+                    .thenComparing(TopologyNode::getId));
+
+            int first = Math.min(Math.max(0, offset != null ? offset : 0), ends.size());
+            int last = Math.min(first + pageSize(limit), ends.size());
+            List<List<TopologyNode>> paths = new ArrayList<>(last - first);
+            for (TopologyNode end : ends.subList(first, last)) {
+                List<TopologyNode> path = new ArrayList<>();
+                for (String id = end.getId(); id != null; id = previous.get(id)) {
+                    path.add(graph.node(id));
+                }
+                if (!backward) {
+                    Collections.reverse(path);
+                }
+                paths.add(path);
+            }
+            return new PathPage(graph.revision(), paths, ends.size(), truncated,
+                    last < ends.size() ? last : null);
+        });
+    }
+
+    /**
+     * Nodes of the given types in the given namespaces, pods only if they carry every label of {@code labels}, and
+     * the edges between them. Ordered by namespace and node id.
+     *
+     * @param types  all when empty
+     * @param labels pod labels to require; only pods keep their labels, so other types are not filtered by them
+     */
+    public GraphPage subgraph(NamespaceFilter namespaces, Set<ResourceType> types, Map<String, String> labels,
+                              Integer offset, Integer limit) {
+        int maxNodes = properties.getQuery().getMaxNodes();
+        StoreSnapshot snapshot = store.snapshot();
+        return engine.read(graph -> {
+            List<TopologyNode> matched = new ArrayList<>();
+            for (String namespace : graph.namespaces()) {
+                if (!namespaces.includes(namespace)) {
+                    continue;
+                }
+                Set<String> pods = null;
+                if (!labels.isEmpty()) {
+                    pods = new HashSet<>();
+                    for (String uid : snapshot.getPodLabelIndex().select(namespace, labels)) {
+                        pods.add(ResourceType.POD.nodeId(uid));
+                    }
+                }
+                if (pods != null && types.equals(Set.of(ResourceType.POD))) {
+                    for (String id : pods) {
+                        TopologyNode node = graph.node(id);
+                        if (node != null) {
+                            matched.add(node);
+                        }
+                    }
+                    continue;
+                }
+                for (TopologyNode node : graph.nodes(namespace)) {
+                    if (!types.isEmpty() && !types.contains(node.getType())) {
+                        continue;
+                    }
+                    if (pods != null && node.getType() == ResourceType.POD && !pods.contains(node.getId())) {
+                        continue;
+                    }
+                    matched.add(node);
+                }
+            }
+            matched.sort(BY_NAMESPACE_AND_ID);
+            boolean truncated = matched.size() > maxNodes;
+            return page(graph, truncated ? matched.subList(0, maxNodes) : matched, truncated, offset, limit);
+        });
+    }
+
+    // The page of matched nodes with their outgoing edges towards other matched nodes
+    private GraphPage page(TopologyGraphEngine.GraphView graph, List<TopologyNode> matched, boolean truncated,
+                           Integer offset, Integer limit) {
+        int first = Math.min(Math.max(0, offset != null ? offset : 0), matched.size());
+        int last = Math.min(first + pageSize(limit), matched.size());
+        Set<String> ids = new HashSet<>(matched.size() * 2);
+        for (TopologyNode node : matched) {
+            ids.add(node.getId());
+        }
+        List<TopologyNode> nodes = new ArrayList<>(matched.subList(first, last));
+        List<TopologyEdge> edges = new ArrayList<>();
+        for (TopologyNode node : nodes) {
+            for (TopologyEdge edge : graph.outgoing(node.getId())) {
+                if (ids.contains(edge.getTarget())) {
+                    edges.add(edge);
+                }
+            }
+        }
+        return new GraphPage(graph.revision(), nodes, edges, matched.size(), truncated,
+                last < matched.size() ? last : null);
+    }
+
+    private static List<String> neighbors(TopologyGraphEngine.GraphView graph, String id, Direction direction) {
+        List<String> neighbors = new ArrayList<>();
+        if (direction != Direction.IN) {
+            for (TopologyEdge edge : graph.outgoing(id)) {
+                neighbors.add(edge.getTarget());
+            }
+        }
+        if (direction != Direction.OUT) {
+            for (TopologyEdge edge : graph.incoming(id)) {
+                neighbors.add(edge.getSource());
+            }
+        }
+        return neighbors;
+    }
+
+    private int pageSize(Integer limit) {
+        return Math.max(1, clamp(limit, properties.getQuery().getPageSize()));
+    }
+
+    // Requested value within [0, maximum]; the maximum when not requested
+    private static int clamp(Integer requested, int maximum) {
+        return requested != null ? Math.max(0, Math.min(requested, maximum)) : maximum;
+    }
+}
@@ -0,0 +1,114 @@
+package com.raushan.k8smapper.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.raushan.k8smapper.model.NamespaceFilter;
+import com.raushan.k8smapper.model.TopologySnapshot;
+import com.raushan.k8smapper.model.WireFormat;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshots of the latest revision, one per namespace set and view (full or aggregated), serialized at most once per
+ * format and shared by the REST API and the WebSocket publisher. An entry never changes once built; when the graph
+ * moves on, the next lookup builds a new one and entries of older revisions are dropped.
+ */
+@Component
+@RequiredArgsConstructor
+public class TopologySnapshotCache {
+
+    // Guards against unbounded growth from clients asking for many distinct namespace sets within one revision
+    private static final int MAX_ENTRIES = 256;
+
+    private final TopologyGraphEngine graphEngine;
+    private final TopologyEncoder encoder;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    // Revisions restart at zero with the process, so tags from a previous run must not match
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private record Key(NamespaceFilter filter, boolean aggregated) {
+    }
+
+    /**
+     * Snapshot of the current revision restricted to {@code filter}, encoded on demand in each requested format.
+     */
+    public Entry get(NamespaceFilter filter) {
+        return get(filter, false);
+    }
+
+    /**
+     * Same as {@link #get(NamespaceFilter)}, of the aggregated view if {@code aggregated} is set.
+     */
+    public Entry get(NamespaceFilter filter, boolean aggregated) {
+        Key key = new Key(filter, aggregated);
+        Entry cached = entries.get(key);
+        if (cached != null && cached.revision() == graphEngine.getRevision()) {
+            return cached;
+        }
+        TopologySnapshot snapshot = graphEngine.snapshot(filter, aggregated);
+        Entry entry = new Entry(snapshot, tag(snapshot.revision(), key), encoder);
+        entries.values().removeIf(stale -> stale.revision() < entry.revision());
+        if (entries.size() < MAX_ENTRIES) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private String tag(long revision, Key key) {
+        NamespaceFilter filter = key.filter();
+        String tag = epoch + "-" + revision + (key.aggregated() ? "-lod" : "");
+        if (filter.namespaces() != null) {
+            String namespaces = String.join(",", new TreeSet<>(filter.namespaces()));
+            tag += "-" + DigestUtils.md5DigestAsHex(namespaces.getBytes(StandardCharsets.UTF_8));
+        }
+        return tag;
+    }
+
+    /**
+     * One snapshot. Each format is serialized, and gzip-compressed, only the first time a client asks for it.
+     */
+    public static final class Entry {
+        private final TopologySnapshot snapshot;
+        private final String tag;
+        private final TopologyEncoder encoder;
+        private final Map<WireFormat, byte[]> bodies = new ConcurrentHashMap<>();
+        private final Map<WireFormat, byte[]> gzipped = new ConcurrentHashMap<>();
+
+        private Entry(TopologySnapshot snapshot, String tag, TopologyEncoder encoder) {
+            this.snapshot = snapshot;
+            this.tag = tag;
+            this.encoder = encoder;
+        }
+
+        public long revision() {
+            return snapshot.revision();
+        }
+
+        // Strong ETag: a body is fixed for its revision, namespace set, format and content coding
+        public String etag(WireFormat format, boolean gzipped) {
+            return "\"" + tag + (format == WireFormat.JSON ? "" : "-" + format.name().toLowerCase())
+                    + (gzipped ? "-gz" : "") + "\"";
+        }
+
+        public byte[] body(WireFormat format) {
+            return bodies.computeIfAbsent(format, f -> {
+                try {
+                    return encoder.encode(snapshot, f);
+                } catch (JsonProcessingException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        public byte[] gzip(WireFormat format) {
+            return gzipped.computeIfAbsent(format, f -> encoder.gzip(body(f)));
+        }
+    }
+}
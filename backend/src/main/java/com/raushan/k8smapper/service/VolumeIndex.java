@@ -0,0 +1,63 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.model.projection.PvInfo;
+import com.raushan.k8smapper.model.projection.PvcInfo;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * PersistentVolumes by name, bound or not, and the reverse index from a volume name to the uids of the claims whose
+ * {@code spec.volumeName} names it, so both sides of a PVC -> PV edge resolve with one lookup. PersistentVolumes are
+ * cluster-scoped, so neither map is per namespace. Immutable and part of a {@link StoreSnapshot}.
+ */
+public final class VolumeIndex {
+
+    static final VolumeIndex EMPTY = new VolumeIndex(PersistentHashMap.empty(), PersistentHashMap.empty());
+
+    private final PersistentHashMap<String, PvInfo> volumes;
+    private final PersistentHashMap<String, PersistentHashSet<String>> claimsByVolume;
+
+    private VolumeIndex(PersistentHashMap<String, PvInfo> volumes,
+                        PersistentHashMap<String, PersistentHashSet<String>> claimsByVolume) {
+        this.volumes = volumes;
+        this.claimsByVolume = claimsByVolume;
+    }
+
+    VolumeIndex updateVolume(String name, PvInfo current) {
+        PersistentHashMap<String, PvInfo> updated = current != null ? volumes.plus(name, current) : volumes.minus(name);
+        return updated == volumes ? this : new VolumeIndex(updated, claimsByVolume);
+    }
+
+    VolumeIndex updateClaim(PvcInfo previous, PvcInfo current) {
+        PersistentHashMap<String, PersistentHashSet<String>> claims = claimsByVolume;
+        if (previous != null && previous.volumeName() != null) {
+            PersistentHashSet<String> uids = claims.get(previous.volumeName());
+            if (uids != null) {
+                uids = uids.minus(previous.uid());
+                claims = uids.isEmpty() ? claims.minus(previous.volumeName()) : claims.plus(previous.volumeName(), uids);
+            }
+        }
+        if (current != null && current.volumeName() != null) {
+            claims = claims.plus(current.volumeName(),
+                    claims.getOrDefault(current.volumeName(), PersistentHashSet.empty()).plus(current.uid()));
+        }
+        return claims == claimsByVolume ? this : new VolumeIndex(volumes, claims);
+    }
+
+    public PvInfo volume(String name) {
+        return volumes.get(name);
+    }
+
+    public Map<String, PvInfo> volumes() {
+        return volumes;
+    }
+
+    /**
+     * Uids of the claims, in any namespace, whose {@code spec.volumeName} is this volume.
+     */
+    public Set<String> claims(String volumeName) {
+        Set<String> uids = claimsByVolume.get(volumeName);
+        return uids != null ? uids : Set.of();
+    }
+}
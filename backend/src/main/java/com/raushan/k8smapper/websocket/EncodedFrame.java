@@ -0,0 +1,9 @@
+package com.raushan.k8smapper.websocket;
+
+import org.springframework.web.socket.WebSocketMessage;
+
+/**
+ * A message encoded once and shared by every session it is sent to, tagged with the revision it brings clients to.
+ */
+public record EncodedFrame(long revision, WebSocketMessage<?> message) {
+}
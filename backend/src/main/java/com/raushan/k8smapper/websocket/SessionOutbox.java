@@ -0,0 +1,233 @@
+package com.raushan.k8smapper.websocket;
+
+import com.raushan.k8smapper.model.SessionStats;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Bounded outbound queue for one WebSocket session, drained by its own virtual thread.
+ * <p>
+ * Publishers only enqueue, so a slow client never blocks the publisher or other clients. When the queue overflows,
+ * or a snapshot is requested, everything queued is dropped and replaced by a single "send latest snapshot" marker.
+ * The snapshot is fetched only when the drainer gets to it, so a lagging client skips every intermediate state.
+ * Patches dropped this way are always covered by that later snapshot. A client whose send has been stuck for longer
+ * than the slow-consumer timeout is evicted, checked on every enqueue and by the publisher's periodic sweep. If the
+ * snapshot cannot be built after a few attempts, the session is closed with {@link CloseStatus#SERVER_ERROR} so the
+ * client reconnects rather than waiting for patches it has no base for.
+ */
+public class SessionOutbox {
+
+    private final Logger log = Logger.getLogger(SessionOutbox.class.getName());
+
+    private static final int SNAPSHOT_ATTEMPTS = 3;
+    private static final Duration SNAPSHOT_RETRY_DELAY = Duration.ofMillis(100);
+
+    private final WebSocketSession session;
+    private final Supplier<EncodedFrame> snapshotSupplier;
+    private final int capacity;
+    private final long slowConsumerTimeoutNanos;
+    private final Timer sendTimer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    // Guarded by lock
+    private final Deque<EncodedFrame> queue = new ArrayDeque<>();
+    private boolean snapshotPending;
+    private boolean closed;
+
+    private volatile long sendStartedAt;
+    private volatile long lastRevisionSent = -1;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private final Thread drainer;
+
+    public SessionOutbox(WebSocketSession session, Supplier<EncodedFrame> snapshotSupplier,
+                         int capacity, Duration slowConsumerTimeout, Timer sendTimer) {
+        this.session = session;
+        this.snapshotSupplier = snapshotSupplier;
+        this.capacity = capacity;
+        this.slowConsumerTimeoutNanos = slowConsumerTimeout.toNanos();
+        this.sendTimer = sendTimer;
+        this.drainer = Thread.ofVirtual().name("ws-outbox-" + session.getId()).start(this::drain);
+    }
+
+    public void enqueue(EncodedFrame frame) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (snapshotPending) {
+                // The snapshot is taken later, at a revision that already includes this message
+                dropped.incrementAndGet();
+            } else if (queue.size() >= capacity) {
+                overflows.incrementAndGet();
+                dropped.addAndGet(queue.size() + 1);
+                queue.clear();
+                snapshotPending = true;
+            } else {
+                queue.addLast(frame);
+            }
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+        evictIfStuck();
+    }
+
+    /**
+     * Replaces anything queued with the latest snapshot.
+     */
+    public void requestSnapshot() {
+        lock.lock();
+        try {
+            dropped.addAndGet(queue.size());
+            queue.clear();
+            snapshotPending = true;
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        markClosed();
+    }
+
+    /**
+     * Evicts the session if its current send has been blocked for longer than the slow-consumer timeout. Never blocks,
+     * so it is safe to call for every session from the publisher.
+     */
+    public void evictIfStuck() {
+        long startedAt = sendStartedAt;
+        if (startedAt == 0 || System.nanoTime() - startedAt <= slowConsumerTimeoutNanos || !markClosed()) {
+            return;
+        }
+        log.warning("Evicting slow WebSocket consumer " + session.getId());
+        drainer.interrupt();
+        closeSession(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    public long getLastRevisionSent() {
+        return lastRevisionSent;
+    }
+
+    public SessionStats stats() {
+        int depth;
+        lock.lock();
+        try {
+            depth = queue.size() + (snapshotPending ? 1 : 0);
+        } finally {
+            lock.unlock();
+        }
+        return new SessionStats(session.getId(), lastRevisionSent, depth, sent.get(), dropped.get(), overflows.get());
+    }
+
+    private void drain() {
+        while (true) {
+            EncodedFrame next;
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !snapshotPending && !closed) {
+                    ready.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+                if (snapshotPending) {
+                    snapshotPending = false;
+                    next = null;
+                } else {
+                    next = queue.pollFirst();
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (next == null) {
+                next = snapshot();
+                if (next == null) {
+                    return;
+                }
+            }
+            try {
+                long startedAt = System.nanoTime();
+                sendStartedAt = startedAt;
+                session.sendMessage(next.message());
+                sendTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                sent.incrementAndGet();
+                lastRevisionSent = next.revision();
+            } catch (Exception e) {
+                log.warning("Failed to send to WebSocket session " + session.getId() + ": " + e.getMessage());
+                if (!session.isOpen()) {
+                    close();
+                }
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+    }
+
+    // The latest snapshot, or null once the session has been closed because it could not be built
+    private EncodedFrame snapshot() {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return snapshotSupplier.get();
+            } catch (Exception e) {
+                if (attempt == SNAPSHOT_ATTEMPTS) {
+                    log.severe("Failed to build snapshot for WebSocket session " + session.getId() + ", closing it: "
+                            + e.getMessage());
+                    if (markClosed()) {
+                        closeSession(CloseStatus.SERVER_ERROR);
+                    }
+                    return null;
+                }
+                log.warning("Failed to build snapshot for WebSocket session " + session.getId() + ", retrying: "
+                        + e.getMessage());
+            }
+            try {
+                Thread.sleep(SNAPSHOT_RETRY_DELAY.multipliedBy(attempt));
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+    }
+
+    // True if this call closed the outbox, false if it already was
+    private boolean markClosed() {
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            closed = true;
+            queue.clear();
+            ready.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Closing may block on the same stuck connection, keep it off the publisher and drainer threads
+    private void closeSession(CloseStatus status) {
+        Thread.ofVirtual().start(() -> {
+            try {
+                session.close(status);
+            } catch (Exception ignored) {
+            }
+        });
+    }
+}
@@ -0,0 +1,62 @@
+package com.raushan.k8smapper.websocket;
+
+import com.raushan.k8smapper.model.NamespaceFilter;
+import com.raushan.k8smapper.model.SessionStats;
+import com.raushan.k8smapper.model.WireFormat;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+
+/**
+ * Server-side state of one /ws/topology connection.
+ */
+@Getter
+@RequiredArgsConstructor
+public class TopologySession {
+    private final WebSocketSession session;
+    private final SessionOutbox outbox;
+    // Encoding negotiated at handshake, and whether large frames are sent gzipped
+    private final WireFormat format;
+    private final boolean compressed;
+    // Namespaces this client gets updates for
+    private volatile NamespaceFilter filter = NamespaceFilter.ALL;
+    // Label selector the filter was resolved from, null when the client named its namespaces
+    private volatile Map<String, String> namespaceSelector;
+    // Whether the client gets the aggregated view, with large pod sets collapsed into groups
+    private volatile boolean aggregated;
+
+    public String getId() {
+        return session.getId();
+    }
+
+    /**
+     * Switches the client to a new namespace set or view. Anything queued for the old one is replaced by a snapshot of
+     * the new one.
+     */
+    public synchronized void subscribe(NamespaceFilter filter, Map<String, String> namespaceSelector,
+                                       boolean aggregated) {
+        this.filter = filter;
+        this.namespaceSelector = namespaceSelector;
+        this.aggregated = aggregated;
+        outbox.requestSnapshot();
+    }
+
+    /**
+     * Queues a frame encoded for {@code filter} and view, unless the client has moved to another one since.
+     */
+    public synchronized void deliver(NamespaceFilter filter, boolean aggregated, EncodedFrame frame) {
+        if (filter.equals(this.filter) && aggregated == this.aggregated) {
+            outbox.enqueue(frame);
+        }
+    }
+
+    public long getLastRevisionSent() {
+        return outbox.getLastRevisionSent();
+    }
+
+    public SessionStats stats() {
+        return outbox.stats();
+    }
+}
@@ -0,0 +1,37 @@
+package com.raushan.k8smapper.websocket;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All open /ws/topology sessions, keyed by WebSocket session id. Register, unregister and iteration are lock-free,
+ * and iteration is weakly consistent so broadcasting never blocks connects or disconnects.
+ */
+@Component
+public class TopologySessionRegistry {
+
+    private final Map<String, TopologySession> sessions = new ConcurrentHashMap<>();
+
+    public void register(TopologySession session) {
+        sessions.put(session.getId(), session);
+    }
+
+    public TopologySession unregister(String sessionId) {
+        return sessions.remove(sessionId);
+    }
+
+    public TopologySession get(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    public Collection<TopologySession> all() {
+        return sessions.values();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
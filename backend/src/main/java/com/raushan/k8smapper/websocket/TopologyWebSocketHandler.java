@@ -1,41 +1,50 @@
 package com.raushan.k8smapper.websocket;
 
+import com.raushan.k8smapper.model.WireFormat;
 import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
+import java.util.List;
 import java.util.logging.Logger;
 
+/**
+ * Single shared handler for /ws/topology. It keeps no per-connection state itself; everything lives in the
+ * {@link TopologySession} the publisher registers for each connection.
+ */
 @RequiredArgsConstructor
-public class TopologyWebSocketHandler extends TextWebSocketHandler {
+public class TopologyWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
 
     private final Logger log = Logger.getLogger(TopologyWebSocketHandler.class.getName());
 
     private final TopologyWebSocketPublisher publisher;
-    private WebSocketSession session;
+
+    /**
+     * Subprotocols a client may offer to pick its {@link WireFormat}; a client offering none gets JSON.
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return publisher.subprotocols();
+    }
 
     @Override
     public void afterConnectionEstablished(@NotNull WebSocketSession session) {
         log.info("WebSocket connection established: " + session.getId());
-        this.session = session;
-        publisher.register(this);
+        publisher.open(session);
     }
 
     @Override
-    public void afterConnectionClosed(@NotNull WebSocketSession session, @NotNull CloseStatus status) {
-        log.info("WebSocket connection closed: " + session.getId() + ", Status: " + status);
-        publisher.unregister(this);
+    protected void handleTextMessage(@NotNull WebSocketSession session, @NotNull TextMessage message) {
+        publisher.onClientMessage(session.getId(), message.getPayload());
     }
 
-    public void send(String json) {
-        try {
-            if (session != null && session.isOpen()) {
-                session.sendMessage(new TextMessage(json));
-            }
-        } catch (Exception ignored) {
-        }
+    @Override
+    public void afterConnectionClosed(@NotNull WebSocketSession session, @NotNull CloseStatus status) {
+        log.info("WebSocket connection closed: " + session.getId() + ", Status: " + status);
+        publisher.close(session.getId());
     }
 }
@@ -1,57 +1,275 @@
 package com.raushan.k8smapper.websocket;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.model.ClientMessage;
+import com.raushan.k8smapper.model.NamespaceFilter;
+import com.raushan.k8smapper.model.PatchOp;
+import com.raushan.k8smapper.model.PodGroupExpansion;
+import com.raushan.k8smapper.model.SessionStats;
+import com.raushan.k8smapper.model.TopologyPatch;
+import com.raushan.k8smapper.model.WireFormat;
 import com.raushan.k8smapper.service.K8sTopologyStore;
-import com.raushan.k8smapper.service.TopologyBuilderService;
+import com.raushan.k8smapper.service.TopologyEncoder;
+import com.raushan.k8smapper.service.TopologyGraphEngine;
+import com.raushan.k8smapper.service.TopologyHistory;
+import com.raushan.k8smapper.service.TopologyMetrics;
+import com.raushan.k8smapper.service.TopologySnapshotCache;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
 
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
 
 @Component
 @RequiredArgsConstructor
 public class TopologyWebSocketPublisher {
 
-    private final K8sTopologyStore topologyStore;
-    private final TopologyBuilderService topologyBuilder;
+    private final Logger log = Logger.getLogger(TopologyWebSocketPublisher.class.getName());
+
+    private final TopologyGraphEngine graphEngine;
     private final ObjectMapper objectMapper;
+    private final TopologyEncoder encoder;
+    private final TopologyProperties properties;
+    private final TopologySessionRegistry registry;
+    private final K8sTopologyStore topologyStore;
+    private final TopologySnapshotCache snapshotCache;
+    private final TopologyHistory history;
+    private final TopologyMetrics metrics;
+
+    // Snapshot message of the latest revision per namespace set, view and format, shared by every connect, resync and
+    // subscribe to that set until the graph changes
+    private final Map<FrameKey, EncodedFrame> cachedSnapshots = new ConcurrentHashMap<>();
+
+    // Publisher thread only: revision of the last patch each subscribed namespace set and view was sent
+    private final Map<Subscription, Long> lastChange = new HashMap<>();
+    private long namespaceLabelsVersion = -1;
+
+    private record Encoding(WireFormat format, boolean compressed) {
+    }
+
+    private record Subscription(NamespaceFilter filter, boolean aggregated) {
+    }
+
+    private record FrameKey(Subscription subscription, Encoding encoding) {
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        metrics.sessions(registry::size);
+    }
+
+    /**
+     * Subprotocols clients may offer on connect, see {@link WireFormat}. The {@code .gz} variants are only offered
+     * while compression is enabled.
+     */
+    public List<String> subprotocols() {
+        List<String> subprotocols = new ArrayList<>();
+        for (WireFormat format : WireFormat.values()) {
+            if (properties.getWebsocket().isCompression()) {
+                subprotocols.add(format.subprotocol() + WireFormat.GZIP_SUFFIX);
+            }
+            subprotocols.add(format.subprotocol());
+        }
+        return subprotocols;
+    }
+
+    /**
+     * Registers a newly connected session and queues the current snapshot for it, in the format picked by the
+     * negotiated subprotocol.
+     */
+    public void open(WebSocketSession session) {
+        TopologyProperties.WebSocket config = properties.getWebsocket();
+        WireFormat format = WireFormat.forSubprotocol(session.getAcceptedProtocol());
+        boolean compressed = WireFormat.isCompressed(session.getAcceptedProtocol());
+        Encoding encoding = new Encoding(format, compressed);
+        SessionOutbox outbox = new SessionOutbox(session,
+                () -> snapshotFrame(new FrameKey(subscriptionOf(session.getId()), encoding)),
+                config.getQueueCapacity(), config.getSlowConsumerTimeout(), metrics.sessionSend());
+        registry.register(new TopologySession(session, outbox, format, compressed));
+        outbox.requestSnapshot();
+    }
 
-    private final CopyOnWriteArraySet<TopologyWebSocketHandler> sessions = new CopyOnWriteArraySet<>();
+    public void close(String sessionId) {
+        TopologySession session = registry.unregister(sessionId);
+        if (session != null) {
+            session.getOutbox().close();
+        }
+    }
 
-    public void register(TopologyWebSocketHandler handler) {
-        sessions.add(handler);
+    public List<SessionStats> sessionStats() {
+        return registry.all().stream().map(TopologySession::stats).toList();
     }
 
-    public void unregister(TopologyWebSocketHandler handler) {
-        sessions.remove(handler);
+    /**
+     * Evicts sessions whose send has been stuck past the slow-consumer timeout. Outboxes also check on every enqueue,
+     * but a session nothing is published to would otherwise hold its connection and drainer forever.
+     */
+    @Scheduled(fixedRate = 1000)
+    public void evictStuckSessions() {
+        registry.all().forEach(session -> session.getOutbox().evictIfStuck());
     }
 
-    // TODO: Uncomment to enable periodic updates
-    @Scheduled(fixedRate = 30000)
-    public void publishGraph() {
-        var graph = topologyBuilder.buildFromStore(topologyStore);
+    /**
+     * Sends everything that changed since the last call as one patch. Must only be called from one thread at a time,
+     * otherwise patches could reach clients out of revision order.
+     * <p>
+     * Sessions are grouped by namespace set and view. Each group gets only the ops of its namespaces, from the patch
+     * of its view, serialized (and compressed) once per encoding in use and handed to every session of the group; a
+     * group none of whose namespaces changed gets nothing. Its patches are therefore based on the last revision that
+     * group was sent rather than on the previous global revision, and clients apply a patch whenever
+     * {@code baseRevision <= their revision < revision}.
+     */
+    public void publishChanges() {
+        refreshSelectorSubscriptions();
+        TopologyGraphEngine.Drained drained = graphEngine.drain();
+        if (drained == null) {
+            return;
+        }
+        history.record(drained.patch());
+
+        Map<Subscription, List<TopologySession>> groups = new HashMap<>();
+        registry.all().forEach(session -> groups.computeIfAbsent(
+                new Subscription(session.getFilter(), session.isAggregated()), s -> new ArrayList<>()).add(session));
+        lastChange.keySet().retainAll(groups.keySet());
 
-        sessions.forEach(handler -> {
+        groups.forEach((subscription, sessions) -> {
+            TopologyPatch patch = subscription.aggregated() ? drained.aggregated() : drained.patch();
+            if (patch == null) {
+                return;
+            }
+            NamespaceFilter filter = subscription.filter();
+            long baseRevision = lastChange.computeIfAbsent(subscription, s -> patch.baseRevision());
+            List<PatchOp> ops = filter.equals(NamespaceFilter.ALL) ? patch.ops()
+                    : patch.ops().stream().filter(op -> filter.includes(op.namespace())).toList();
+            if (ops.isEmpty()) {
+                return;
+            }
+            TopologyPatch filtered = new TopologyPatch(baseRevision, patch.revision(), ops);
+            Map<WireFormat, byte[]> bodies = new EnumMap<>(WireFormat.class);
+            Map<Encoding, EncodedFrame> frames = new HashMap<>();
             try {
-                String json = objectMapper.writeValueAsString(graph);
-                handler.send(json);
+                for (TopologySession session : sessions) {
+                    Encoding encoding = encodingOf(session);
+                    if (!frames.containsKey(encoding)) {
+                        byte[] body = bodies.get(encoding.format());
+                        if (body == null) {
+                            body = encoder.encode(filtered, encoding.format());
+                            bodies.put(encoding.format(), body);
+                        }
+                        byte[] encoded = body;
+                        frames.put(encoding, new EncodedFrame(patch.revision(),
+                                message(encoding, body, () -> encoder.gzip(encoded))));
+                    }
+                }
             } catch (Exception e) {
-                e.getMessage();
+                log.severe("Failed to serialize topology patch: " + e.getMessage());
+                return;
             }
+            lastChange.put(subscription, patch.revision());
+            sessions.forEach(session ->
+                    session.deliver(filter, subscription.aggregated(), frames.get(encodingOf(session))));
         });
     }
 
-    public void publishGraph(K8sTopologyStore store) {
-        var graph = topologyBuilder.buildFromStore(store);
+    private static Encoding encodingOf(TopologySession session) {
+        return new Encoding(session.getFormat(), session.isCompressed());
+    }
 
-        sessions.forEach(handler -> {
-            try {
-                String json = objectMapper.writeValueAsString(graph);
-                handler.send(json);
-            } catch (Exception e) {
-                // ignore failed handlers
+    // Gzipped frames are always binary, so JSON clients tell them apart by frame type and CBOR clients by the gzip
+    // magic bytes, which no CBOR item starts with
+    private WebSocketMessage<?> message(Encoding encoding, byte[] body, Supplier<byte[]> gzipped) {
+        if (encoding.compressed() && body.length >= properties.getWebsocket().getCompressionMinSize().toBytes()) {
+            return new BinaryMessage(gzipped.get());
+        }
+        return encoding.format() == WireFormat.JSON ? new TextMessage(body) : new BinaryMessage(body);
+    }
+
+    // Re-resolves label-selected namespace sets after namespaces were added, removed or relabeled
+    private void refreshSelectorSubscriptions() {
+        long version = topologyStore.getNamespaceLabelsVersion();
+        if (version == namespaceLabelsVersion) {
+            return;
+        }
+        namespaceLabelsVersion = version;
+        registry.all().forEach(session -> {
+            Map<String, String> selector = session.getNamespaceSelector();
+            if (selector != null) {
+                NamespaceFilter filter = NamespaceFilter.of(topologyStore.namespacesMatching(selector));
+                if (!filter.equals(session.getFilter())) {
+                    session.subscribe(filter, selector, session.isAggregated());
+                }
             }
         });
     }
+
+    private Subscription subscriptionOf(String sessionId) {
+        TopologySession session = registry.get(sessionId);
+        return session != null ? new Subscription(session.getFilter(), session.isAggregated())
+                : new Subscription(NamespaceFilter.ALL, false);
+    }
+
+    private EncodedFrame snapshotFrame(FrameKey key) {
+        EncodedFrame cached = cachedSnapshots.get(key);
+        Subscription subscription = key.subscription();
+        TopologySnapshotCache.Entry snapshot = snapshotCache.get(subscription.filter(), subscription.aggregated());
+        if (cached != null && cached.revision() == snapshot.revision()) {
+            return cached;
+        }
+        WireFormat format = key.encoding().format();
+        EncodedFrame frame = new EncodedFrame(snapshot.revision(),
+                message(key.encoding(), snapshot.body(format), () -> snapshot.gzip(format)));
+        cachedSnapshots.values().removeIf(stale -> stale.revision() < snapshot.revision());
+        cachedSnapshots.put(key, frame);
+        return frame;
+    }
+
+    // Queued behind any patches already on their way; dropped along with them if the client falls behind and gets a
+    // snapshot instead, in which case it asks again
+    private void expand(TopologySession session, String groupId) throws JsonProcessingException {
+        PodGroupExpansion expansion = graphEngine.expand(groupId);
+        if (expansion == null) {
+            return;
+        }
+        Encoding encoding = encodingOf(session);
+        byte[] body = encoder.encode(expansion, encoding.format());
+        session.getOutbox().enqueue(new EncodedFrame(expansion.revision(),
+                message(encoding, body, () -> encoder.gzip(body))));
+    }
+
+    public void onClientMessage(String sessionId, String payload) {
+        TopologySession session = registry.get(sessionId);
+        if (session == null) {
+            return;
+        }
+        try {
+            ClientMessage message = objectMapper.readValue(payload, ClientMessage.class);
+            if ("resync".equals(message.type()) || "refresh".equals(message.type())) {
+                session.getOutbox().requestSnapshot();
+            } else if ("subscribe".equals(message.type())) {
+                Map<String, String> selector = message.namespaceSelector();
+                NamespaceFilter filter = selector != null
+                        ? NamespaceFilter.of(topologyStore.namespacesMatching(selector))
+                        : NamespaceFilter.of(message.namespaces());
+                session.subscribe(filter, selector, Boolean.TRUE.equals(message.aggregate()));
+            } else if ("expand".equals(message.type()) && message.group() != null) {
+                expand(session, message.group());
+            }
+        } catch (Exception e) {
+            log.warning("Ignoring malformed client message: " + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,99 @@
+package com.raushan.k8smapper.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.service.K8sTopologyStore;
+import com.raushan.k8smapper.service.TopologyEncoder;
+import com.raushan.k8smapper.service.TopologyGraphEngine;
+import com.raushan.k8smapper.service.TopologyMetrics;
+import com.raushan.k8smapper.service.TopologySnapshotCache;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+class K8sControllerTest {
+
+    private final K8sTopologyStore store = new K8sTopologyStore();
+    private final TopologyGraphEngine engine = new TopologyGraphEngine(store, new TopologyProperties());
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        engine.init();
+        TopologyEncoder encoder = new TopologyEncoder(new ObjectMapper(),
+                new TopologyMetrics(new SimpleMeterRegistry()));
+        K8sController controller = new K8sController(new TopologySnapshotCache(engine, encoder), null, null, encoder,
+                null, null, null, engine);
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+        store.upsertPod("shop", "web", new PodBuilder()
+                .withNewMetadata().withNamespace("shop").withName("web").withUid("web-uid").endMetadata()
+                .build());
+        engine.drainPatch();
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', nullValues = "null", value = {
+            "gzip                  | true",
+            "x-gzip                | true",
+            "deflate, GZIP;Q=0.8   | true",
+            "br;q=1.0, gzip;q=0.5  | true",
+            "*                     | true",
+            "gzip;q=0              | false",
+            "gzip; q=0.000, br     | false",
+            "gzip;q=0, *           | false",
+            "*;q=0                 | false",
+            "br, deflate           | false",
+            "gzip;q=invalid        | false",
+            "null                  | false"
+    })
+    void acceptsGzipOnlyWithNonZeroQuality(String acceptEncoding, boolean expected) {
+        assertEquals(expected, K8sController.acceptsGzip(acceptEncoding));
+    }
+
+    @Test
+    void gzippedAndIdentityBodiesHaveDistinctTags() throws Exception {
+        MockHttpServletResponse identity = mvc.perform(get("/api/topology")).andReturn().getResponse();
+        MockHttpServletResponse gzipped = mvc.perform(get("/api/topology").header("Accept-Encoding", "gzip"))
+                .andReturn().getResponse();
+
+        assertEquals("gzip", gzipped.getHeader("Content-Encoding"));
+        assertArrayEquals(identity.getContentAsByteArray(),
+                new GZIPInputStream(new ByteArrayInputStream(gzipped.getContentAsByteArray())).readAllBytes());
+        assertNotEquals(identity.getHeader("ETag"), gzipped.getHeader("ETag"));
+        assertFalse(identity.getHeader("ETag").startsWith("W/"));
+
+        // A cached representation only validates requests that would get the same bytes
+        assertEquals(304, mvc.perform(get("/api/topology").header("Accept-Encoding", "gzip")
+                .header("If-None-Match", gzipped.getHeader("ETag"))).andReturn().getResponse().getStatus());
+        assertEquals(200, mvc.perform(get("/api/topology")
+                .header("If-None-Match", gzipped.getHeader("ETag"))).andReturn().getResponse().getStatus());
+        assertEquals(200, mvc.perform(get("/api/topology").header("Accept-Encoding", "gzip")
+                .header("If-None-Match", identity.getHeader("ETag"))).andReturn().getResponse().getStatus());
+    }
+
+    @Test
+    void refusedGzipIsNotSent() throws Exception {
+        MockHttpServletResponse response = mvc.perform(get("/api/topology").header("Accept-Encoding", "gzip;q=0"))
+                .andReturn().getResponse();
+
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(mvc.perform(get("/api/topology")).andReturn().getResponse().getHeader("ETag"),
+                response.getHeader("ETag"));
+    }
+}
@@ -0,0 +1,153 @@
+package com.raushan.k8smapper.service;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.StatusBuilder;
+import io.fabric8.kubernetes.client.utils.KubernetesSerialization;
+import io.fabric8.mockwebserver.http.Dispatcher;
+import io.fabric8.mockwebserver.http.MockResponse;
+import io.fabric8.mockwebserver.http.RecordedRequest;
+import io.fabric8.mockwebserver.http.Response;
+import io.fabric8.mockwebserver.http.WebSocket;
+import io.fabric8.mockwebserver.http.WebSocketListener;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Just enough of the API server for informers, behind a kubernetes-server-mock server: paged lists honouring
+ * {@code limit} and {@code continue}, watches over WebSocket, and expiry of those watches with 410 Gone. Collections
+ * are addressed by their cluster-wide path, e.g. {@code /api/v1/pods}; unknown collections are empty. Every change
+ * bumps one cluster-wide resourceVersion, like etcd does.
+ */
+class FakeApiServer extends Dispatcher {
+
+    private final KubernetesSerialization serialization = new KubernetesSerialization();
+    private final AtomicLong resourceVersion = new AtomicLong(1);
+    // By collection path, then namespace/name, in list order
+    private final Map<String, Map<String, HasMetadata>> collections = new ConcurrentHashMap<>();
+    private final Map<String, Set<WebSocket>> watches = new ConcurrentHashMap<>();
+    // Query parameters of every list request, by collection path
+    private final Map<String, List<Map<String, String>>> lists = new ConcurrentHashMap<>();
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        String[] target = request.getPath().split("\\?", 2);
+        String path = target[0];
+        Map<String, String> query = query(target.length > 1 ? target[1] : "");
+        if (!"GET".equals(request.getMethod())) {
+            return new MockResponse().setResponseCode(405);
+        }
+        if ("true".equals(query.get("watch"))) {
+            return new MockResponse().withWebSocketUpgrade(new WebSocketListener() {
+                @Override
+                public void onOpen(WebSocket webSocket, Response response) {
+                    watches.computeIfAbsent(path, p -> ConcurrentHashMap.newKeySet()).add(webSocket);
+                }
+
+                @Override
+                public void onClosing(WebSocket webSocket, int code, String reason) {
+                    watches.getOrDefault(path, Set.of()).remove(webSocket);
+                }
+            });
+        }
+        lists.computeIfAbsent(path, p -> new CopyOnWriteArrayList<>()).add(query);
+        return list(path, query);
+    }
+
+    /**
+     * Creates or replaces an object, notifying open watches of its collection only if {@code notify} is set, so
+     * tests can also make changes the watch misses.
+     */
+    synchronized void put(String path, HasMetadata resource, boolean notify) {
+        resource.getMetadata().setResourceVersion(String.valueOf(resourceVersion.incrementAndGet()));
+        HasMetadata previous = collection(path).put(key(resource), resource);
+        if (notify) {
+            send(path, event(previous == null ? "ADDED" : "MODIFIED", resource));
+        }
+    }
+
+    synchronized void delete(String path, String namespace, String name, boolean notify) {
+        HasMetadata removed = collection(path).remove(namespace == null ? name : namespace + "/" + name);
+        resourceVersion.incrementAndGet();
+        if (removed != null && notify) {
+            send(path, event("DELETED", removed));
+        }
+    }
+
+    /**
+     * Ends every watch of the collection with 410 Gone, as the API server does once the resourceVersion a watch
+     * resumes from has been compacted away.
+     */
+    void expireWatches(String path) {
+        send(path, event("ERROR", new StatusBuilder()
+                .withStatus("Failure")
+                .withReason("Expired")
+                .withMessage("too old resource version")
+                .withCode(410)
+                .build()));
+    }
+
+    boolean watching(String path) {
+        return !watches.getOrDefault(path, Set.of()).isEmpty();
+    }
+
+    List<Map<String, String>> lists(String path) {
+        return lists.getOrDefault(path, List.of());
+    }
+
+    // One page of at most `limit` objects from the offset the continue token carries
+    private synchronized MockResponse list(String path, Map<String, String> query) {
+        List<HasMetadata> items = new ArrayList<>(collection(path).values());
+        int from = query.containsKey("continue") ? Integer.parseInt(query.get("continue")) : 0;
+        int to = query.containsKey("limit") ? Math.min(items.size(), from + Integer.parseInt(query.get("limit")))
+                : items.size();
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("resourceVersion", String.valueOf(resourceVersion.get()));
+        if (to < items.size()) {
+            metadata.put("continue", String.valueOf(to));
+        }
+        Map<String, Object> body = Map.of("metadata", metadata, "items", items.subList(from, to));
+        return new MockResponse().setResponseCode(200).setBody(serialization.asJson(body));
+    }
+
+    private void send(String path, String event) {
+        watches.getOrDefault(path, Set.of()).forEach(webSocket -> webSocket.send(event));
+    }
+
+    private String event(String type, Object object) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("type", type);
+        event.put("object", object);
+        return serialization.asJson(event);
+    }
+
+    private Map<String, HasMetadata> collection(String path) {
+        return collections.computeIfAbsent(path, p -> new TreeMap<>());
+    }
+
+    private static String key(HasMetadata resource) {
+        String namespace = resource.getMetadata().getNamespace();
+        return namespace == null ? resource.getMetadata().getName() : namespace + "/" + resource.getMetadata().getName();
+    }
+
+    private static Map<String, String> query(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        for (String parameter : query.split("&")) {
+            if (!parameter.isEmpty()) {
+                String[] pair = parameter.split("=", 2);
+                parameters.put(pair[0], pair.length > 1 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "");
+            }
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,160 @@
+package com.raushan.k8smapper.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raushan.k8smapper.config.TopologyProperties;
+import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.api.model.NamespaceBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import io.fabric8.mockwebserver.Context;
+import io.fabric8.mockwebserver.MockWebServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The informers of {@link K8sWatcherService} against a fake API server: paged initial lists, the re-list after a
+ * watch expires, and namespaces that only appear after startup.
+ */
+class K8sWatcherServiceTest {
+
+    private static final String PODS = "/api/v1/pods";
+    private static final String NAMESPACES = "/api/v1/namespaces";
+    private static final long PAGE_SIZE = 2;
+
+    private final FakeApiServer api = new FakeApiServer();
+    private final K8sTopologyStore store = new K8sTopologyStore();
+    private KubernetesMockServer server;
+    private KubernetesClient client;
+    private K8sWatcherService watcher;
+
+    @BeforeEach
+    void startServer() {
+        server = new KubernetesMockServer(new Context(), new MockWebServer(), new HashMap<>(), api, false);
+        server.init();
+        client = server.createClient();
+    }
+
+    @AfterEach
+    void stop() {
+        if (watcher != null) {
+            watcher.stop();
+        }
+        client.close();
+        server.destroy();
+    }
+
+    @Test
+    void listsInPages() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            api.put(PODS, pod("ns" + i % 2, "pod-" + i), false);
+        }
+
+        startWatcher();
+        await(() -> podNames().size() == 5, "initial list");
+
+        List<Map<String, String>> pages = api.lists(PODS);
+        assertEquals(3, pages.size(), "pages " + pages);
+        assertNull(pages.get(0).get("continue"));
+        assertEquals("2", pages.get(1).get("continue"));
+        assertEquals("4", pages.get(2).get("continue"));
+        for (Map<String, String> page : pages) {
+            assertEquals(String.valueOf(PAGE_SIZE), page.get("limit"));
+        }
+        assertEquals(Set.of("ns0/pod-0", "ns0/pod-2", "ns0/pod-4", "ns1/pod-1", "ns1/pod-3"), podNames());
+    }
+
+    @Test
+    void relistsAfterWatchExpires() throws Exception {
+        api.put(PODS, pod("a", "kept"), false);
+        api.put(PODS, pod("a", "deleted"), false);
+        api.put(PODS, pod("a", "changed"), false);
+        startWatcher();
+        await(() -> podNames().size() == 3 && api.watching(PODS), "initial list and watch");
+
+        // Changes the watch never delivers, e.g. while the backend was disconnected past the compaction window
+        api.delete(PODS, "a", "deleted", false);
+        api.put(PODS, new PodBuilder(pod("a", "changed")).editSpec().withNodeName("node-2").endSpec().build(), false);
+        api.put(PODS, pod("b", "added"), false);
+        api.expireWatches(PODS);
+
+        await(() -> podNames().equals(Set.of("a/kept", "a/changed", "b/added"))
+                && "node-2".equals(store.getPodsByNamespace().get("a").get("changed").nodeName()), "re-list");
+        // A list starts with a page without continue token: the initial one and a single re-list
+        assertEquals(2, api.lists(PODS).stream().filter(page -> !page.containsKey("continue")).count());
+    }
+
+    @Test
+    void picksUpNamespacesCreatedAfterStartup() throws Exception {
+        api.put(NAMESPACES, namespace("a"), false);
+        api.put(PODS, pod("a", "first"), false);
+        startWatcher();
+        await(() -> podNames().equals(Set.of("a/first")) && api.watching(PODS) && api.watching(NAMESPACES),
+                "initial list and watches");
+        assertFalse(store.getNamespaces().contains("late"));
+
+        api.put(NAMESPACES, namespace("late"), true);
+        api.put(PODS, pod("late", "second"), true);
+
+        await(() -> podNames().equals(Set.of("a/first", "late/second")), "pod in the new namespace");
+        await(() -> Map.of("team", "late").equals(store.getNamespaceLabels().get("late")), "namespace labels");
+        assertTrue(store.namespacesMatching(Map.of("team", "late")).contains("late"));
+    }
+
+    private void startWatcher() {
+        TopologyProperties properties = new TopologyProperties();
+        properties.getInformer().setListPageSize(PAGE_SIZE);
+        properties.getInformer().setResyncPeriod(Duration.ZERO);
+        TopologyCheckpoint checkpoint = new TopologyCheckpoint(properties, client, new ObjectMapper());
+        watcher = new K8sWatcherService(client, store, mock(TopologyPublishScheduler.class), properties, checkpoint,
+                new TopologyMetrics(new SimpleMeterRegistry()));
+        watcher.watchAllResources();
+    }
+
+    private Set<String> podNames() {
+        Set<String> names = new TreeSet<>();
+        store.getPodsByNamespace().forEach((namespace, pods) ->
+                pods.keySet().forEach(name -> names.add(namespace + "/" + name)));
+        return names;
+    }
+
+    private static Pod pod(String namespace, String name) {
+        return new PodBuilder()
+                .withNewMetadata().withNamespace(namespace).withName(name).withUid(namespace + "-" + name)
+                .endMetadata()
+                .withNewSpec().withNodeName("node-1").endSpec()
+                .build();
+    }
+
+    private static Namespace namespace(String name) {
+        return new NamespaceBuilder()
+                .withNewMetadata().withName(name).withUid("namespace-" + name).addToLabels("team", name).endMetadata()
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for " + what);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.raushan.k8smapper.service;
+
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.model.NamespaceFilter;
+import com.raushan.k8smapper.model.NamespaceGraph;
+import com.raushan.k8smapper.model.PatchOp;
+import com.raushan.k8smapper.model.PodGroupNode;
+import com.raushan.k8smapper.model.TopologyEdge;
+import com.raushan.k8smapper.model.TopologyNode;
+import com.raushan.k8smapper.model.TopologyPatch;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.api.model.ObjectMetaBuilder;
+import io.fabric8.kubernetes.api.model.ObjectReferenceBuilder;
+import io.fabric8.kubernetes.api.model.OwnerReference;
+import io.fabric8.kubernetes.api.model.OwnerReferenceBuilder;
+import io.fabric8.kubernetes.api.model.PersistentVolume;
+import io.fabric8.kubernetes.api.model.PersistentVolumeBuilder;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaimBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodStatusBuilder;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.kubernetes.api.model.apps.DeploymentBuilder;
+import io.fabric8.kubernetes.api.model.apps.ReplicaSetBuilder;
+import io.fabric8.kubernetes.api.model.networking.v1.IngressBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the incrementally maintained graph against a full rebuild from the store, and the patches it emits against
+ * its own snapshots, over random sequences of upserts and removals. Names and uids come from small pools so that
+ * owners, selectors, volumes and references keep resolving, breaking and resolving again. The aggregated view is
+ * checked the same way with a low pod threshold, so pod groups keep forming and dissolving.
+ */
+class TopologyGraphEngineTest {
+
+    private static final String[] NAMESPACES = {"a", "b", "c"};
+    private static final int STEPS = 3000;
+
+    private final K8sTopologyStore store = new K8sTopologyStore();
+    private final TopologyGraphEngine engine = new TopologyGraphEngine(store, new TopologyProperties());
+    private final TopologyBuilderService builder =
+            new TopologyBuilderService(new TopologyProperties(), new TopologyMetrics(new SimpleMeterRegistry()));
+
+    // What a client holds after replaying every drained patch
+    private final Map<String, Map<String, TopologyNode>> clientNodes = new HashMap<>();
+    private final Map<String, Set<TopologyEdge>> clientEdges = new HashMap<>();
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 42, 2024})
+    void matchesFullRebuildAfterEveryChange(long seed) {
+        engine.init();
+        Random random = new Random(seed);
+        long revision = engine.getRevision();
+        for (int step = 0; step < STEPS; step++) {
+            mutate(random);
+            TopologyPatch patch = engine.drainPatch();
+            if (patch != null) {
+                assertEquals(revision, patch.baseRevision(), "patch base at step " + step);
+                revision = patch.revision();
+                replay(patch);
+            }
+            Map<String, NamespaceGraph> snapshot = engine.snapshot().namespaces();
+            assertTrue(TopologyGraphEngine.sameTopology(snapshot, builder.buildFromStore(store).namespaces()),
+                    "engine diverged from full rebuild at step " + step);
+            assertTrue(TopologyGraphEngine.sameTopology(snapshot, clientGraph()),
+                    "replayed patches diverged from snapshot at step " + step);
+        }
+        assertTrue(edgeCount(engine.snapshot().namespaces()) > 0);
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {7, 99})
+    void batchedPatchesMatchSnapshots(long seed) {
+        engine.init();
+        Random random = new Random(seed);
+        long revision = engine.getRevision();
+        for (int step = 0; step < STEPS; step++) {
+            mutate(random);
+            // Until drained, a snapshot still shows the revision the client has
+            assertTrue(TopologyGraphEngine.sameTopology(engine.snapshot().namespaces(), clientGraph()),
+                    "undrained snapshot moved ahead at step " + step);
+            if (random.nextInt(8) != 0) {
+                continue;
+            }
+            TopologyPatch patch = engine.drainPatch();
+            if (patch != null) {
+                assertEquals(revision, patch.baseRevision(), "patch base at step " + step);
+                revision = patch.revision();
+                replay(patch);
+            }
+            assertTrue(TopologyGraphEngine.sameTopology(engine.snapshot().namespaces(),
+                    builder.buildFromStore(store).namespaces()), "engine diverged from full rebuild at step " + step);
+            assertTrue(TopologyGraphEngine.sameTopology(engine.snapshot().namespaces(), clientGraph()),
+                    "replayed patches diverged from snapshot at step " + step);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {5, 77})
+    void aggregatedPatchesMatchAggregatedSnapshots(long seed) {
+        TopologyProperties properties = new TopologyProperties();
+        properties.getAggregation().setPodThreshold(3);
+        TopologyGraphEngine aggregating = new TopologyGraphEngine(store, properties);
+        aggregating.init();
+        Random random = new Random(seed);
+        long revision = aggregating.getRevision();
+        boolean sawGroup = false;
+        for (int step = 0; step < STEPS; step++) {
+            // Half of the changes are pods of a few owners, so groups keep crossing the threshold both ways
+            if (random.nextBoolean()) {
+                mutate(random);
+            } else {
+                mutateGroupedPod(random);
+            }
+            if (random.nextInt(4) != 0) {
+                continue;
+            }
+            TopologyGraphEngine.Drained drained = aggregating.drain();
+            if (drained != null) {
+                assertEquals(revision, drained.patch().baseRevision(), "patch base at step " + step);
+                revision = drained.patch().revision();
+                if (drained.aggregated() != null) {
+                    assertEquals(revision, drained.aggregated().revision(), "aggregated revision at step " + step);
+                    replay(drained.aggregated());
+                }
+            }
+            Map<String, NamespaceGraph> client = clientGraph();
+            assertTrue(TopologyGraphEngine.sameTopology(aggregating.snapshot(NamespaceFilter.ALL, true).namespaces(),
+                    client), "replayed aggregated patches diverged from snapshot at step " + step);
+            sawGroup |= client.values().stream()
+                    .anyMatch(graph -> graph.getNodes().stream().anyMatch(PodGroupNode.class::isInstance));
+        }
+        assertTrue(sawGroup);
+    }
+
+    private void replay(TopologyPatch patch) {
+        for (PatchOp op : patch.ops()) {
+            switch (op.op()) {
+                case ADD_NODE, UPDATE_NODE -> clientNodes.computeIfAbsent(op.namespace(), ns -> new HashMap<>())
+                        .put(op.node().getId(), op.node());
+                case REMOVE_NODE -> {
+                    Map<String, TopologyNode> nodes = clientNodes.get(op.namespace());
+                    nodes.remove(op.id());
+                    if (nodes.isEmpty()) {
+                        clientNodes.remove(op.namespace());
+                    }
+                }
+                case ADD_EDGE -> clientEdges.computeIfAbsent(op.namespace(), ns -> new LinkedHashSet<>())
+                        .add(op.edge());
+                case REMOVE_EDGE -> clientEdges.get(op.namespace()).remove(op.edge());
+            }
+        }
+    }
+
+    private Map<String, NamespaceGraph> clientGraph() {
+        Map<String, NamespaceGraph> graph = new HashMap<>();
+        clientNodes.forEach((namespace, nodes) -> graph.put(namespace, new NamespaceGraph(
+                new ArrayList<>(nodes.values()), new ArrayList<>(clientEdges.getOrDefault(namespace, Set.of())))));
+        return graph;
+    }
+
+    private static int edgeCount(Map<String, NamespaceGraph> graph) {
+        return graph.values().stream().mapToInt(namespace -> namespace.getEdges().size()).sum();
+    }
+
+    // One random upsert or removal of one of the watched kinds
+    private void mutate(Random random) {
+        String namespace = NAMESPACES[random.nextInt(NAMESPACES.length)];
+        String name = pick(random);
+        int kind = random.nextInt(9);
+        boolean remove = random.nextInt(4) == 0;
+        // A second generation of each name, so objects are also replaced under the same name with a new uid
+        int generation = random.nextInt(2);
+        ObjectMeta meta = new ObjectMetaBuilder()
+                .withName(name)
+                .withNamespace(namespace)
+                .withUid(uid(namespace, "kind" + kind + "/" + generation, name))
+                .withLabels(Map.of("app", "app" + random.nextInt(2), "tier", "tier" + random.nextInt(2)))
+                .build();
+        switch (kind) {
+            case 0 -> {
+                if (remove) {
+                    store.removePod(namespace, name);
+                } else {
+                    meta.setOwnerReferences(List.of(owner("ReplicaSet", namespace, random)));
+                    store.upsertPod(namespace, name, pod(meta, random));
+                }
+            }
+            case 1 -> {
+                if (remove) {
+                    store.removeService(namespace, name);
+                } else {
+                    store.upsertService(namespace, name, new ServiceBuilder().withMetadata(meta)
+                            .withNewSpec().withSelector(Map.of("app", "app" + random.nextInt(2))).endSpec().build());
+                }
+            }
+            case 2 -> {
+                if (remove) {
+                    store.removeDeployment(namespace, name);
+                } else {
+                    store.upsertDeployment(namespace, name, new DeploymentBuilder().withMetadata(meta).build());
+                }
+            }
+            case 3 -> {
+                if (remove) {
+                    store.removeReplicaSet(namespace, name);
+                } else {
+                    meta.setOwnerReferences(List.of(owner("Deployment", namespace, random)));
+                    store.upsertReplicaSet(namespace, name, new ReplicaSetBuilder().withMetadata(meta).build());
+                }
+            }
+            case 4 -> {
+                if (remove) {
+                    store.removeConfigMap(namespace, name);
+                } else {
+                    store.upsertConfigMap(namespace, name, new ConfigMapBuilder().withMetadata(meta).build());
+                }
+            }
+            case 5 -> {
+                if (remove) {
+                    store.removeSecret(namespace, name);
+                } else {
+                    store.upsertSecret(namespace, name, new SecretBuilder().withMetadata(meta).build());
+                }
+            }
+            case 6 -> {
+                if (remove) {
+                    store.removeIngress(namespace, name);
+                } else {
+                    store.upsertIngress(namespace, name, new IngressBuilder().withMetadata(meta)
+                            .withNewSpec().addNewRule().withNewHttp().addNewPath().withNewBackend()
+                            .withNewService().withName(pick(random)).endService()
+                            .endBackend().endPath().endHttp().endRule().endSpec().build());
+                }
+            }
+            case 7 -> {
+                if (remove) {
+                    store.removePVC(namespace, name);
+                } else {
+                    store.upsertPVC(namespace, name, new PersistentVolumeClaimBuilder().withMetadata(meta)
+                            .withNewSpec().withVolumeName(pick(random)).endSpec().build());
+                }
+            }
+            default -> {
+                if (remove) {
+                    store.removePV(name);
+                } else {
+                    store.upsertPV(name, volume(name, generation, random));
+                }
+            }
+        }
+    }
+
+    // Upsert or removal of a pod owned by one of two ReplicaSets per namespace; an upsert may move it to the other one
+    private void mutateGroupedPod(Random random) {
+        String namespace = NAMESPACES[random.nextInt(NAMESPACES.length)];
+        String name = "p" + random.nextInt(8);
+        if (random.nextInt(5) == 0) {
+            store.removePod(namespace, name);
+            return;
+        }
+        ObjectMeta meta = new ObjectMetaBuilder()
+                .withName(name)
+                .withNamespace(namespace)
+                .withUid(uid(namespace, "grouped/" + random.nextInt(2), name))
+                .withLabels(Map.of("app", "app" + random.nextInt(2)))
+                .withOwnerReferences(new OwnerReferenceBuilder().withKind("ReplicaSet")
+                        .withUid(uid(namespace, "kind3/0", "r" + random.nextInt(2))).build())
+                .build();
+        Pod pod = pod(meta, random);
+        pod.getSpec().setNodeName("node" + random.nextInt(3));
+        pod.setStatus(new PodStatusBuilder().withPhase(random.nextBoolean() ? "Running" : "Pending").build());
+        store.upsertPod(namespace, name, pod);
+    }
+
+    private static Pod pod(ObjectMeta meta, Random random) {
+        return new PodBuilder().withMetadata(meta).withNewSpec()
+                .addNewVolume().withName("config").withNewConfigMap().withName(pick(random)).endConfigMap().endVolume()
+                .addNewVolume().withName("secret").withNewSecret().withSecretName(pick(random)).endSecret().endVolume()
+                .addNewVolume().withName("data").withNewPersistentVolumeClaim().withClaimName(pick(random))
+                .endPersistentVolumeClaim().endVolume()
+                .addNewContainer().withName("main")
+                .addNewEnvFrom().withNewConfigMapRef().withName(pick(random)).endConfigMapRef().endEnvFrom()
+                .addNewEnvFrom().withNewSecretRef().withName(pick(random)).endSecretRef().endEnvFrom()
+                .endContainer()
+                .endSpec().build();
+    }
+
+    // Bound to a claim in one of the namespaces most of the time, unbound otherwise
+    private static PersistentVolume volume(String name, int generation, Random random) {
+        PersistentVolume volume = new PersistentVolumeBuilder()
+                .withNewMetadata().withName(name).withUid(uid("", "pv/" + generation, name)).endMetadata()
+                .withNewSpec().endSpec()
+                .build();
+        int claimNamespace = random.nextInt(NAMESPACES.length + 1);
+        if (claimNamespace < NAMESPACES.length) {
+            volume.getSpec().setClaimRef(new ObjectReferenceBuilder()
+                    .withNamespace(NAMESPACES[claimNamespace]).withName(pick(random)).build());
+        }
+        return volume;
+    }
+
+    // Owner reference to one of the uids an owner of that kind may get, so it resolves some of the time
+    private static OwnerReference owner(String kind, String namespace, Random random) {
+        String ownerKind = kind.equals("ReplicaSet") ? "kind3" : "kind2";
+        return new OwnerReferenceBuilder()
+                .withKind(kind)
+                .withUid(uid(namespace, ownerKind + "/" + random.nextInt(2), pick(random)))
+                .build();
+    }
+
+    private static String pick(Random random) {
+        return "r" + random.nextInt(6);
+    }
+
+    private static String uid(String namespace, String kind, String name) {
+        return UUID.nameUUIDFromBytes((namespace + "/" + kind + "/" + name).getBytes()).toString();
+    }
+}
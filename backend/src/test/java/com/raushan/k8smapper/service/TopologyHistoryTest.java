@@ -0,0 +1,144 @@
+package com.raushan.k8smapper.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raushan.k8smapper.config.TopologyProperties;
+import com.raushan.k8smapper.model.HistoryWindow;
+import com.raushan.k8smapper.model.NamespaceFilter;
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.model.TopologyPatch;
+import com.raushan.k8smapper.model.TopologySnapshot;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Records a graph that keeps changing into a history buffer small enough to wrap many times, and checks every
+ * retained revision against the snapshot the engine had when it was recorded.
+ */
+class TopologyHistoryTest {
+
+    private static final int KEYFRAME_EVERY = 4;
+    private static final int STEPS = 300;
+
+    private final K8sTopologyStore store = new K8sTopologyStore();
+    private final TopologyGraphEngine engine = new TopologyGraphEngine(store, new TopologyProperties());
+    private final TopologyEncoder encoder =
+            new TopologyEncoder(new ObjectMapper(), new TopologyMetrics(new SimpleMeterRegistry()));
+
+    // What the engine showed at each recorded revision
+    private final Map<Long, TopologySnapshot> expected = new HashMap<>();
+
+    @Test
+    void emptyHistoryHasNoWindow() {
+        engine.init();
+        TopologyHistory history = history(DataSize.ofKilobytes(8));
+
+        assertEquals(new HistoryWindow(-1, -1, -1, -1, 0, 0, 0, 8192), history.window());
+        assertNull(history.atRevision(Long.MAX_VALUE, NamespaceFilter.ALL));
+        assertNull(history.at(Long.MAX_VALUE, NamespaceFilter.ALL));
+    }
+
+    @Test
+    void wrapsAroundDroppingTheOldestKeyframes() {
+        engine.init();
+        TopologyHistory history = history(DataSize.ofKilobytes(8));
+        long firstRevision = -1;
+        long oldest = -1;
+        int advances = 0;
+        for (int step = 0; step < STEPS; step++) {
+            long revision = recordChange(history, step);
+            if (firstRevision < 0) {
+                firstRevision = revision;
+            }
+            HistoryWindow window = history.window();
+            assertTrue(window.bytesUsed() <= window.capacity(), "buffer overfilled at step " + step);
+            assertTrue(window.oldestRevision() >= oldest, "window moved back at step " + step);
+            if (oldest >= 0 && window.oldestRevision() > oldest) {
+                advances++;
+            }
+            oldest = window.oldestRevision();
+            // The oldest retained record is always a keyframe, so the start of the window can be rebuilt
+            assertNotNull(history.atRevision(oldest, NamespaceFilter.ALL), "no keyframe at step " + step);
+        }
+
+        HistoryWindow window = history.window();
+        assertTrue(window.oldestRevision() > firstRevision, "history never wrapped");
+        assertTrue(advances > 2, "oldest keyframe was overwritten only " + advances + " times");
+        assertTrue(window.keyframes() >= 1);
+        assertEquals(window.newestRevision() - window.oldestRevision() + 1, window.keyframes() + window.patches());
+    }
+
+    @Test
+    void replaysEveryRetainedRevisionFromItsKeyframe() {
+        engine.init();
+        TopologyHistory history = history(DataSize.ofKilobytes(8));
+        for (int step = 0; step < STEPS; step++) {
+            recordChange(history, step);
+        }
+
+        HistoryWindow window = history.window();
+        for (long revision = window.oldestRevision(); revision <= window.newestRevision(); revision++) {
+            TopologySnapshot rebuilt = history.atRevision(revision, NamespaceFilter.ALL);
+            assertEquals(revision, rebuilt.revision());
+            assertTrue(TopologyGraphEngine.sameTopology(expected.get(revision).namespaces(), rebuilt.namespaces()),
+                    "revision " + revision + " rebuilt differently");
+        }
+        // A revision past the newest is the newest, and one before the window cannot be rebuilt
+        assertEquals(window.newestRevision(), history.atRevision(Long.MAX_VALUE, NamespaceFilter.ALL).revision());
+        assertNull(history.atRevision(window.oldestRevision() - 1, NamespaceFilter.ALL));
+    }
+
+    @Test
+    void rebuildsByTimestampWithinTheWindowOnly() {
+        engine.init();
+        TopologyHistory history = history(DataSize.ofKilobytes(8));
+        for (int step = 0; step < STEPS; step++) {
+            recordChange(history, step);
+        }
+
+        HistoryWindow window = history.window();
+        TopologySnapshot newest = history.at(window.newestTimestamp(), NamespaceFilter.ALL);
+        assertEquals(window.newestRevision(), newest.revision());
+        assertTrue(TopologyGraphEngine.sameTopology(engine.snapshot().namespaces(), newest.namespaces()));
+        TopologySnapshot oldest = history.at(window.oldestTimestamp(), NamespaceFilter.ALL);
+        assertNotNull(oldest);
+        assertTrue(oldest.revision() >= window.oldestRevision());
+        assertTrue(TopologyGraphEngine.sameTopology(expected.get(oldest.revision()).namespaces(),
+                oldest.namespaces()));
+        assertNull(history.at(window.oldestTimestamp() - 1, NamespaceFilter.ALL));
+    }
+
+    private TopologyHistory history(DataSize capacity) {
+        TopologyProperties properties = new TopologyProperties();
+        properties.getHistory().setCapacity(capacity);
+        properties.getHistory().setKeyframeEvery(KEYFRAME_EVERY);
+        return new TopologyHistory(engine, encoder, properties);
+    }
+
+    // Adds or removes one ConfigMap out of a small pool, so the graph stays bounded, and records the revision
+    private long recordChange(TopologyHistory history, int step) {
+        String namespace = step % 3 == 0 ? "a" : "b";
+        String name = "cm" + step % 7;
+        if (store.snapshot().get(ResourceType.CONFIGMAP, namespace, name) != null) {
+            store.removeConfigMap(namespace, name);
+        } else {
+            store.upsertConfigMap(namespace, name, new ConfigMapBuilder()
+                    .withNewMetadata().withNamespace(namespace).withName(name)
+                    .withUid(namespace + "/" + name + "/" + step).endMetadata()
+                    .build());
+        }
+        TopologyPatch patch = engine.drainPatch();
+        history.record(patch);
+        expected.put(patch.revision(), engine.snapshot());
+        return patch.revision();
+    }
+}
@@ -0,0 +1,133 @@
+package com.raushan.k8smapper.websocket;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionOutboxTest {
+
+    private static final EncodedFrame SNAPSHOT = new EncodedFrame(1, new TextMessage("snapshot"));
+
+    private final Timer sendTimer = Timer.builder("send").register(new SimpleMeterRegistry());
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void collapsesOverflowIntoSnapshot() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        WebSocketSession session = session("overflow");
+        doAnswer(invocation -> {
+            released.await();
+            sent.add(((TextMessage) invocation.getArgument(0)).getPayload());
+            return null;
+        }).when(session).sendMessage(any());
+        SessionOutbox outbox = new SessionOutbox(session, () -> SNAPSHOT, 4, Duration.ofSeconds(30), sendTimer);
+
+        for (int i = 0; i < 10; i++) {
+            outbox.enqueue(new EncodedFrame(0, new TextMessage("patch" + i)));
+        }
+        released.countDown();
+
+        awaitSent(1);
+        assertEquals("snapshot", sent.get(sent.size() - 1));
+        assertTrue(sent.size() <= 2, "backlog was not collapsed: " + sent);
+        outbox.close();
+    }
+
+    @Test
+    void sweepEvictsStuckSessionWithoutFurtherEnqueues() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        WebSocketSession session = session("stuck");
+        doAnswer(invocation -> {
+            released.await();
+            return null;
+        }).when(session).sendMessage(any());
+        SessionOutbox outbox = new SessionOutbox(session, () -> SNAPSHOT, 4, Duration.ofMillis(50), sendTimer);
+        outbox.enqueue(new EncodedFrame(0, new TextMessage("patch")));
+
+        Thread.sleep(150);
+        outbox.evictIfStuck();
+
+        verify(session, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        released.countDown();
+    }
+
+    @Test
+    void retriesFailedSnapshot() throws Exception {
+        WebSocketSession session = recordingSession("retry");
+        AtomicInteger attempts = new AtomicInteger();
+        Supplier<EncodedFrame> flaky = () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("not ready");
+            }
+            return SNAPSHOT;
+        };
+        SessionOutbox outbox = new SessionOutbox(session, flaky, 4, Duration.ofSeconds(30), sendTimer);
+
+        outbox.requestSnapshot();
+
+        awaitSent(1);
+        assertEquals(List.of("snapshot"), sent);
+        verify(session, never()).close(any());
+        outbox.close();
+    }
+
+    @Test
+    void closesSessionWhenSnapshotKeepsFailing() throws Exception {
+        WebSocketSession session = recordingSession("failing");
+        SessionOutbox outbox = new SessionOutbox(session, () -> {
+            throw new IllegalStateException("broken");
+        }, 4, Duration.ofSeconds(30), sendTimer);
+
+        outbox.requestSnapshot();
+
+        verify(session, timeout(2000)).close(CloseStatus.SERVER_ERROR);
+        // Patches have no base on this session, so nothing more is sent
+        outbox.enqueue(new EncodedFrame(2, new TextMessage("patch")));
+        Thread.sleep(100);
+        assertTrue(sent.isEmpty());
+    }
+
+    private WebSocketSession recordingSession(String id) throws Exception {
+        WebSocketSession session = session(id);
+        doAnswer(invocation -> sent.add(((TextMessage) invocation.getArgument(0)).getPayload()))
+                .when(session).sendMessage(any());
+        return session;
+    }
+
+    private static WebSocketSession session(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (sent.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(sent.size() >= count, "sent " + sent);
+    }
+}
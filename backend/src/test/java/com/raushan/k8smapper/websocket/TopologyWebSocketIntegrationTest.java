@@ -0,0 +1,185 @@
+package com.raushan.k8smapper.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.raushan.k8smapper.model.ResourceType;
+import com.raushan.k8smapper.service.K8sTopologyStore;
+import com.raushan.k8smapper.service.K8sWatcherService;
+import com.raushan.k8smapper.service.TopologyGraphEngine;
+import com.raushan.k8smapper.service.TopologyPublishScheduler;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many clients on /ws/topology while the store changes: every session must end up at the latest revision, holding
+ * exactly the graph of that revision, whether it connected before or during the changes.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "topology.publish.debounce=20ms",
+        "topology.publish.max-delay=200ms",
+        "topology.history.capacity=1MB"
+})
+class TopologyWebSocketIntegrationTest {
+
+    private static final int SESSIONS = 16;
+    private static final int PODS = 60;
+    private static final String[] NAMESPACES = {"a", "b", "c"};
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // No cluster here: the store is fed directly
+    @MockBean
+    private K8sWatcherService watcher;
+
+    @Autowired
+    private K8sTopologyStore store;
+    @Autowired
+    private TopologyPublishScheduler scheduler;
+    @Autowired
+    private TopologyGraphEngine engine;
+
+    @LocalServerPort
+    private int port;
+
+    private final List<WebSocketSession> sessions = new ArrayList<>();
+
+    @AfterEach
+    void disconnect() throws Exception {
+        for (WebSocketSession session : sessions) {
+            session.close();
+        }
+    }
+
+    @Test
+    void everySessionReachesLatestRevision() throws Exception {
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < SESSIONS / 2; i++) {
+            clients.add(connect());
+        }
+        await(() -> clients.stream().allMatch(client -> client.revision() >= 0), "initial snapshots");
+
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < PODS; i++) {
+            String uid = "pod-uid-" + i;
+            String namespace = NAMESPACES[i % NAMESPACES.length];
+            store.upsertPod(namespace, "pod-" + i, new PodBuilder()
+                    .withNewMetadata().withName("pod-" + i).withNamespace(namespace).withUid(uid).endMetadata()
+                    .withNewSpec().endSpec()
+                    .build());
+            scheduler.markDirty();
+            expected.add(ResourceType.POD.nodeId(uid));
+            if (i == PODS / 2) {
+                // The rest connect while changes are being published
+                for (int j = 0; j < SESSIONS / 2; j++) {
+                    clients.add(connect());
+                }
+            }
+            if (i % 10 == 9) {
+                Thread.sleep(50);
+            }
+        }
+        for (int i = 0; i < PODS; i += 4) {
+            store.removePod(NAMESPACES[i % NAMESPACES.length], "pod-" + i);
+            scheduler.markDirty();
+            expected.remove(ResourceType.POD.nodeId("pod-uid-" + i));
+        }
+
+        await(() -> !scheduler.getStats().pending() && clients.stream().allMatch(client ->
+                client.revision() == engine.getRevision() && client.nodes().equals(expected)), "latest revision");
+        for (Client client : clients) {
+            assertEquals(engine.getRevision(), client.revision());
+            assertEquals(expected, client.nodes());
+        }
+    }
+
+    private Client connect() throws Exception {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        // Snapshots of the whole graph are larger than the default 8KB buffer
+        container.setDefaultMaxTextMessageBufferSize(1 << 20);
+        Client client = new Client();
+        sessions.add(new StandardWebSocketClient(container)
+                .execute(client, "ws://localhost:" + port + "/ws/topology")
+                .get(5, TimeUnit.SECONDS));
+        return client;
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for " + what);
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Keeps the node ids of the graph the way a browser client does: replaced by snapshots, and updated by patches
+     * whose base revision it has reached.
+     */
+    private static class Client extends TextWebSocketHandler {
+
+        private final Set<String> nodes = new HashSet<>();
+        private long revision = -1;
+
+        @Override
+        protected synchronized void handleTextMessage(@NotNull WebSocketSession session, @NotNull TextMessage message)
+                throws Exception {
+            JsonNode frame = MAPPER.readTree(message.getPayload());
+            switch (frame.path("type").asText()) {
+                case "snapshot" -> {
+                    nodes.clear();
+                    frame.path("namespaces").forEach(namespace ->
+                            namespace.path("nodes").forEach(node -> nodes.add(node.path("id").asText())));
+                    revision = frame.path("revision").asLong();
+                }
+                case "patch" -> {
+                    long base = frame.path("baseRevision").asLong();
+                    long next = frame.path("revision").asLong();
+                    if (base > revision || next <= revision) {
+                        return;
+                    }
+                    for (JsonNode op : frame.path("ops")) {
+                        switch (op.path("op").asText()) {
+                            case "addNode", "updateNode" -> nodes.add(op.path("node").path("id").asText());
+                            case "removeNode" -> nodes.remove(op.path("id").asText());
+                            default -> {
+                            }
+                        }
+                    }
+                    revision = next;
+                }
+                default -> {
+                }
+            }
+        }
+
+        synchronized long revision() {
+            return revision;
+        }
+
+        synchronized Set<String> nodes() {
+            return new HashSet<>(nodes);
+        }
+    }
+}
@@ -1,9 +1,9 @@
 import React, { useState, useEffect, useCallback } from 'react';
-import useWebSocket from 'react-use-websocket';
 import { TopologyGraph } from './components/TopologyGraph/TopologyGraph';
 import { MainLayout } from './components/Layout/MainLayout';
 import { Sidebar } from './components/Sidebar/Sidebar';
-import { TopologyData, K8sWebSocketData, ResourceType, NodeData as K8sNodeData } from './types/kubernetes';
+import { TopologyData, ResourceType, NodeData as K8sNodeData } from './types/kubernetes';
+import { useWebSocket } from './hooks/useWebSocket';
 import { ThemeProvider } from '@mui/material';
 import { theme } from './theme';
 import { MainContent } from './components/Layout/MainContent';
@@ -33,45 +33,31 @@ export const App: React.FC = () => {
   const [error, setError] = useState<string | null>(null);
   const [loading, setLoading] = useState(true);
 
-  const { lastMessage, readyState, sendMessage, getWebSocket } = useWebSocket(WS_URL, {
-    shouldReconnect: (closeEvent: CloseEvent) => true,
+  const { topology, readyState, sendMessage, connect } = useWebSocket(WS_URL, {
     reconnectInterval: 3000,
-    retryOnError: true,
     onOpen: () => {
-      console.log('WebSocket connection established');
       setError(null);
     },
     onError: (event: Event) => {
-      console.error('WebSocket error:', event);
       setError('WebSocket connection error');
     },
-    onClose: (event: CloseEvent) => {
-      console.log('WebSocket connection closed:', event.code, event.reason);
-    },
   });
 
   const handleRefresh = useCallback(() => {
     setLoading(true);
-    const ws = getWebSocket();
-    if (ws && ws.readyState === WebSocket.OPEN) {
-      // Send a refresh message to the server
-      sendMessage(JSON.stringify({ type: 'refresh' }));
+    if (readyState === WebSocket.OPEN) {
+      // Ask the server for a fresh snapshot
+      sendMessage({ type: 'refresh' });
     } else {
-      // If WebSocket is not open, try to reconnect
-      ws?.close();
-      setTimeout(() => {
-        const newWs = new WebSocket(WS_URL);
-        newWs.onopen = () => {
-          sendMessage(JSON.stringify({ type: 'refresh' }));
-        };
-      }, 1000);
+      // If WebSocket is not open, try to reconnect; the server sends a snapshot on connect
+      connect();
     }
-  }, [getWebSocket, sendMessage]);
+  }, [readyState, sendMessage, connect]);
 
   useEffect(() => {
-    if (lastMessage) {
+    if (topology) {
       try {
-        const data = JSON.parse(lastMessage.data) as K8sWebSocketData;
+        const data = topology;
 
         // Extract namespaces for the dropdown
         const namespaceList = Object.entries(data.namespaces).map(([id, ns]) => ({
@@ -113,12 +99,12 @@ export const App: React.FC = () => {
         });
         setLoading(false);
       } catch (err) {
-        console.error('Error parsing WebSocket message:', err);
-        setError('Failed to parse WebSocket message');
+        console.error('Error processing topology update:', err);
+        setError('Failed to process topology update');
         setLoading(false);
       }
     }
-  }, [lastMessage]);
+  }, [topology]);
 
   const handleNamespaceChange = (namespaceId: string | null) => {
     setSelectedNamespace(namespaceId);
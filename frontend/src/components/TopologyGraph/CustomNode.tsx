@@ -11,6 +11,7 @@ const CustomNode = ({ data }: NodeProps) => {
       case ResourceType.NAMESPACE:
         return '#6366F1';
       case ResourceType.POD:
+      case ResourceType.POD_GROUP:
         return '#10B981';
       case ResourceType.SERVICE:
         return '#F59E0B';
@@ -51,6 +52,8 @@ const CustomNode = ({ data }: NodeProps) => {
         return '🫙'
       case ResourceType.PV:
         return '💾'
+      case ResourceType.POD_GROUP:
+        return '🗃️';
       default:
         return '❓';
     }
@@ -140,6 +143,17 @@ const CustomNode = ({ data }: NodeProps) => {
             Namespace: {data.namespace}
           </Typography>
         )}
+        {data.type === ResourceType.POD_GROUP && (
+          <Typography
+            variant="caption"
+            sx={{
+              color: 'text.secondary',
+              fontSize: '0.75rem',
+            }}
+          >
+            Pods: {data.pods} ({Object.entries(data.phases || {}).map(([phase, count]) => `${count} ${phase}`).join(', ')})
+          </Typography>
+        )}
         {data.connections && (
           <Typography
             variant="caption"
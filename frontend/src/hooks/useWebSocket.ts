@@ -1,15 +1,11 @@
-import { useState, useEffect, useCallback } from 'react';
-import { NodeData, EdgeData } from '../types/kubernetes';
-
-interface WebSocketMessage {
-  type: 'add' | 'update' | 'delete';
-  resource: NodeData | EdgeData;
-}
+import { useState, useEffect, useCallback, useRef } from 'react';
+import { K8sWebSocketData, PodGroupExpansionMessage, TopologyMessage } from '../types/kubernetes';
+import { applyPatch, fromSnapshot, toWebSocketData, TopologyState } from '../utils/topologyPatch';
 
 interface WebSocketOptions {
   onMessage?: (data: any) => void;
   onOpen?: () => void;
-  onClose?: () => void;
+  onClose?: (event: CloseEvent) => void;
   onError?: (error: Event) => void;
   reconnectAttempts?: number;
   reconnectInterval?: number;
@@ -18,91 +14,194 @@ interface WebSocketOptions {
 interface WebSocketHook {
   sendMessage: (message: any) => void;
   lastMessage: any;
+  // Current graph, kept up to date from the initial snapshot plus every patch
+  topology: K8sWebSocketData | null;
+  revision: number | null;
   readyState: number;
   connect: () => void;
   disconnect: () => void;
+  // Narrows updates to the given namespaces, or to those matching a label selector; no arguments means all of them.
+  // With aggregate set, large pod sets arrive collapsed into POD_GROUP nodes
+  subscribe: (namespaces?: string[], namespaceSelector?: Record<string, string>, aggregate?: boolean) => void;
+  // Pods and edges of the pod groups the user expanded, by group node id, refetched whenever the group changes
+  expansions: Record<string, PodGroupExpansionMessage>;
+  expand: (groupId: string) => void;
+  collapse: (groupId: string) => void;
+}
+
+interface Subscription {
+  namespaces?: string[];
+  namespaceSelector?: Record<string, string>;
+  aggregate?: boolean;
 }
 
+// Browsers with DecompressionStream can take large frames gzipped (binary); small ones still arrive as text
+const canGunzip = typeof (window as any).DecompressionStream === 'function';
+const SUBPROTOCOLS = canGunzip ? ['topology.json.gz', 'topology.json'] : ['topology.json'];
+
+const decode = (data: string | ArrayBuffer): Promise<string> => {
+  if (typeof data === 'string') {
+    return Promise.resolve(data);
+  }
+  const DecompressionStream = (window as any).DecompressionStream;
+  return new Response(new Blob([data]).stream().pipeThrough(new DecompressionStream('gzip'))).text();
+};
+
+const send = (ws: WebSocket, message: any) => {
+  if (ws.readyState === WebSocket.OPEN) {
+    ws.send(JSON.stringify(message));
+  }
+};
+
+const without = (expansions: Record<string, PodGroupExpansionMessage>, group: string) => {
+  const rest = { ...expansions };
+  delete rest[group];
+  return rest;
+};
+
 export const useWebSocket = (url: string, options: WebSocketOptions = {}): WebSocketHook => {
-  const [socket, setSocket] = useState<WebSocket | null>(null);
   const [lastMessage, setLastMessage] = useState<any>(null);
+  const [topology, setTopology] = useState<K8sWebSocketData | null>(null);
+  const [revision, setRevision] = useState<number | null>(null);
   const [readyState, setReadyState] = useState<number>(WebSocket.CLOSED);
-  const [reconnectCount, setReconnectCount] = useState<number>(0);
-  const [isConnecting, setIsConnecting] = useState<boolean>(false);
-
-  const {
-    onMessage,
-    onOpen,
-    onClose,
-    onError,
-    reconnectAttempts = 5,
-    reconnectInterval = 3000,
-  } = options;
+  const [expansions, setExpansions] = useState<Record<string, PodGroupExpansionMessage>>({});
+
+  // Refs rather than state so that reconnecting or re-rendering does not recreate the socket
+  const socketRef = useRef<WebSocket | null>(null);
+  const stateRef = useRef<TopologyState | null>(null);
+  const reconnectCountRef = useRef<number>(0);
+  const closedByUserRef = useRef<boolean>(false);
+  // Re-sent after every reconnect, the server starts each connection with all namespaces
+  const subscriptionRef = useRef<Subscription | null>(null);
+  const expandedRef = useRef<Set<string>>(new Set());
+  // Decoding is asynchronous for gzipped frames, messages are chained to keep them in order
+  const decodeQueueRef = useRef<Promise<void>>(Promise.resolve());
+  const optionsRef = useRef(options);
+  optionsRef.current = options;
+
+  const handleTopologyMessage = useCallback((ws: WebSocket, data: TopologyMessage) => {
+    if (data.type === 'patch') {
+      const state = stateRef.current;
+      // Patches to a namespace subscription skip revisions that did not touch it, so the base may be older than ours
+      if (!state || data.baseRevision > state.revision) {
+        // Missed a revision (or no snapshot yet): ask for a fresh snapshot instead of applying out of order
+        send(ws, { type: 'resync', revision: state ? state.revision : null });
+        return;
+      }
+      if (data.revision <= state.revision) {
+        return;
+      }
+      applyPatch(state, data.ops, data.revision);
+      data.ops.forEach((op) => {
+        if (op.op === 'updateNode' && op.node && expandedRef.current.has(op.node.id)) {
+          send(ws, { type: 'expand', group: op.node.id });
+        } else if (op.op === 'removeNode' && op.id && expandedRef.current.delete(op.id)) {
+          const removed = op.id;
+          setExpansions((current) => without(current, removed));
+        }
+      });
+    } else {
+      stateRef.current = fromSnapshot(data);
+      expandedRef.current.forEach((group) => send(ws, { type: 'expand', group }));
+    }
+    setRevision(stateRef.current!.revision);
+    setTopology(toWebSocketData(stateRef.current!));
+  }, []);
 
   const connect = useCallback(() => {
-    if (isConnecting || socket?.readyState === WebSocket.OPEN) return;
+    const current = socketRef.current;
+    if (current && (current.readyState === WebSocket.OPEN || current.readyState === WebSocket.CONNECTING)) return;
 
-    setIsConnecting(true);
-    const ws = new WebSocket(url);
+    closedByUserRef.current = false;
+    const ws = new WebSocket(url, SUBPROTOCOLS);
+    ws.binaryType = 'arraybuffer';
+    socketRef.current = ws;
 
     ws.onopen = () => {
       console.log('WebSocket connection established');
       setReadyState(WebSocket.OPEN);
-      setReconnectCount(0);
-      setIsConnecting(false);
-      onOpen?.();
+      reconnectCountRef.current = 0;
+      if (subscriptionRef.current) {
+        send(ws, { type: 'subscribe', ...subscriptionRef.current });
+      }
+      optionsRef.current.onOpen?.();
     };
 
     ws.onmessage = (event) => {
-      try {
-        const data = JSON.parse(event.data);
-        setLastMessage(data);
-        onMessage?.(data);
-      } catch (error) {
-        console.error('Error parsing WebSocket message:', error);
-      }
+      decodeQueueRef.current = decodeQueueRef.current
+        .then(() => decode(event.data))
+        .then((text) => {
+          const data = JSON.parse(text);
+          setLastMessage(data);
+          if (data.type === 'patch' || 'namespaces' in data) {
+            handleTopologyMessage(ws, data.type ? data : { type: 'snapshot', revision: 0, ...data });
+          } else if (data.type === 'group' && expandedRef.current.has(data.group)) {
+            setExpansions((current) => ({ ...current, [data.group]: data }));
+          }
+          optionsRef.current.onMessage?.(data);
+        })
+        .catch((error) => {
+          console.error('Error parsing WebSocket message:', error);
+        });
     };
 
     ws.onclose = (event) => {
       console.log('WebSocket connection closed:', event.code, event.reason);
       setReadyState(WebSocket.CLOSED);
-      setIsConnecting(false);
-      onClose?.();
+      optionsRef.current.onClose?.(event);
 
       // Attempt to reconnect if not explicitly closed
-      if (event.code !== 1000 && reconnectCount < reconnectAttempts) {
-        console.log(`Attempting to reconnect (${reconnectCount + 1}/${reconnectAttempts})...`);
-        setTimeout(() => {
-          setReconnectCount(prev => prev + 1);
-          connect();
-        }, reconnectInterval);
+      const { reconnectAttempts = 5, reconnectInterval = 3000 } = optionsRef.current;
+      if (!closedByUserRef.current && reconnectCountRef.current < reconnectAttempts) {
+        reconnectCountRef.current += 1;
+        console.log(`Attempting to reconnect (${reconnectCountRef.current}/${reconnectAttempts})...`);
+        setTimeout(connect, reconnectInterval);
       }
     };
 
     ws.onerror = (error) => {
       console.error('WebSocket error:', error);
-      setIsConnecting(false);
-      onError?.(error);
+      optionsRef.current.onError?.(error);
     };
-
-    setSocket(ws);
-  }, [url, onMessage, onOpen, onClose, onError, reconnectAttempts, reconnectInterval, reconnectCount, isConnecting]);
+  }, [url, handleTopologyMessage]);
 
   const disconnect = useCallback(() => {
-    if (socket) {
-      socket.close(1000, 'Client disconnecting');
-      setSocket(null);
+    closedByUserRef.current = true;
+    if (socketRef.current) {
+      socketRef.current.close(1000, 'Client disconnecting');
+      socketRef.current = null;
       setReadyState(WebSocket.CLOSED);
     }
-  }, [socket]);
+  }, []);
 
   const sendMessage = useCallback((message: any) => {
-    if (socket?.readyState === WebSocket.OPEN) {
-      socket.send(JSON.stringify(message));
+    if (socketRef.current?.readyState === WebSocket.OPEN) {
+      socketRef.current.send(JSON.stringify(message));
     } else {
       console.warn('WebSocket is not connected. Message not sent:', message);
     }
-  }, [socket]);
+  }, []);
+
+  const subscribe = useCallback((namespaces?: string[], namespaceSelector?: Record<string, string>,
+                                 aggregate?: boolean) => {
+    subscriptionRef.current = namespaces || namespaceSelector || aggregate
+      ? { namespaces, namespaceSelector, aggregate } : null;
+    if (socketRef.current) {
+      send(socketRef.current, { type: 'subscribe', namespaces, namespaceSelector, aggregate });
+    }
+  }, []);
+
+  const expand = useCallback((groupId: string) => {
+    expandedRef.current.add(groupId);
+    if (socketRef.current) {
+      send(socketRef.current, { type: 'expand', group: groupId });
+    }
+  }, []);
+
+  const collapse = useCallback((groupId: string) => {
+    expandedRef.current.delete(groupId);
+    setExpansions((current) => without(current, groupId));
+  }, []);
 
   // Connect on mount and cleanup on unmount
   useEffect(() => {
@@ -115,8 +214,14 @@ export const useWebSocket = (url: string, options: WebSocketOptions = {}): WebSo
   return {
     sendMessage,
     lastMessage,
+    topology,
+    revision,
     readyState,
     connect,
     disconnect,
+    subscribe,
+    expansions,
+    expand,
+    collapse,
   };
-}; 
\ No newline at end of file
+};
@@ -10,7 +10,8 @@ export const enum ResourceType {
   SECRETS = 'SECRETS',
   CONFIGMAP = 'CONFIGMAP',
   PVC = 'PVC',
-  PV = 'PV'
+  PV = 'PV',
+  POD_GROUP = 'POD_GROUP'
 }
 
 export interface KubernetesResource {
@@ -27,6 +28,11 @@ export interface NodeData extends KubernetesResource {
   cpu?: string;
   ram?: string;
   role?: string;
+  // Pod groups of the aggregated view: owner node id, pod count, pods per phase and per cluster node
+  owner?: string;
+  pods?: number;
+  phases?: Record<string, number>;
+  nodes?: Record<string, number>;
 }
 
 export interface EdgeData {
@@ -119,4 +125,40 @@ export const convertToReactFlowFormat = (data: TopologyData | K8sWebSocketData):
   }
 
   return { nodes, edges };
-}; 
\ No newline at end of file
+}; 
+export interface GraphEdge {
+  source: string;
+  target: string;
+}
+
+export interface TopologySnapshotMessage {
+  type: 'snapshot';
+  revision: number;
+  namespaces: K8sWebSocketData['namespaces'];
+}
+
+export interface PatchOp {
+  op: 'addNode' | 'updateNode' | 'removeNode' | 'addEdge' | 'removeEdge';
+  namespace: string;
+  node?: NodeData;
+  id?: string;
+  edge?: GraphEdge;
+}
+
+export interface TopologyPatchMessage {
+  type: 'patch';
+  baseRevision: number;
+  revision: number;
+  ops: PatchOp[];
+}
+
+export type TopologyMessage = TopologySnapshotMessage | TopologyPatchMessage;
+
+// Pods and edges of a collapsed pod group, sent in reply to an expand message
+export interface PodGroupExpansionMessage {
+  type: 'group';
+  revision: number;
+  group: string;
+  nodes: NodeData[];
+  edges: GraphEdge[];
+}
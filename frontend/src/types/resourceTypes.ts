@@ -1,4 +1,4 @@
-export type ResourceType = 'POD' | 'INGRESS' | 'SERVICE' | 'DEPLOYMENT' | 'REPLICASET' | 'SECRETS' | 'CONFIGMAP' | 'PVC' | 'PV';
+export type ResourceType = 'POD' | 'INGRESS' | 'SERVICE' | 'DEPLOYMENT' | 'REPLICASET' | 'SECRETS' | 'CONFIGMAP' | 'PVC' | 'PV' | 'POD_GROUP';
 
 export interface K8sNode {
     id: string;
@@ -0,0 +1,66 @@
+import { EdgeData, GraphEdge, K8sWebSocketData, NodeData, PatchOp, TopologySnapshotMessage } from '../types/kubernetes';
+
+// Mutable, id-indexed copy of the graph so patch ops are O(1) instead of array scans
+export interface TopologyState {
+  revision: number;
+  namespaces: Map<string, { nodes: Map<string, NodeData>; edges: Map<string, GraphEdge> }>;
+}
+
+const edgeKey = (edge: GraphEdge) => `${edge.source}->${edge.target}`;
+
+const namespaceEntry = (state: TopologyState, namespace: string) => {
+  let entry = state.namespaces.get(namespace);
+  if (!entry) {
+    entry = { nodes: new Map(), edges: new Map() };
+    state.namespaces.set(namespace, entry);
+  }
+  return entry;
+};
+
+export const fromSnapshot = (snapshot: TopologySnapshotMessage): TopologyState => {
+  const state: TopologyState = { revision: snapshot.revision, namespaces: new Map() };
+  Object.entries(snapshot.namespaces).forEach(([namespace, graph]) => {
+    const entry = namespaceEntry(state, namespace);
+    graph.nodes.forEach(node => entry.nodes.set(node.id, node));
+    graph.edges.forEach(edge => entry.edges.set(edgeKey(edge), edge));
+  });
+  return state;
+};
+
+// Ops carry the final state of each node/edge, so applying them is idempotent
+export const applyPatch = (state: TopologyState, ops: PatchOp[], revision: number): void => {
+  ops.forEach(op => {
+    const entry = namespaceEntry(state, op.namespace);
+    switch (op.op) {
+      case 'addNode':
+      case 'updateNode':
+        entry.nodes.set(op.node!.id, op.node!);
+        break;
+      case 'removeNode':
+        entry.nodes.delete(op.id!);
+        break;
+      case 'addEdge':
+        entry.edges.set(edgeKey(op.edge!), op.edge!);
+        break;
+      case 'removeEdge':
+        entry.edges.delete(edgeKey(op.edge!));
+        break;
+    }
+    if (entry.nodes.size === 0 && entry.edges.size === 0) {
+      state.namespaces.delete(op.namespace);
+    }
+  });
+  state.revision = revision;
+};
+
+export const toWebSocketData = (state: TopologyState): K8sWebSocketData => {
+  const namespaces: K8sWebSocketData['namespaces'] = {};
+  state.namespaces.forEach((entry, namespace) => {
+    const nodes: NodeData[] = [];
+    const edges: EdgeData[] = [];
+    entry.nodes.forEach(node => nodes.push(node));
+    entry.edges.forEach((edge, key) => edges.push({ id: key, ...edge }));
+    namespaces[namespace] = { name: namespace, nodes, edges };
+  });
+  return { namespaces };
+};